@@ -0,0 +1,253 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import sessiontester.FileUtils;
+import sessiontester.Parser;
+import sessiontester.Persistor;
+import sessiontester.TagRegistry;
+import sessiontester.TestingSession;
+
+/**
+ * Writes a synthetic archive of testing sessions through Persistor.save,
+ * in the same year/month/day layout the client uses, so the publisher,
+ * loaders and benchmarks can be run against archives of any size.
+ *
+ * Everything is derived from the seed: the same settings always write
+ * the same sessions to the same file names.
+ *
+ * Usage: ArchiveGenerator &lt;directory&gt; [-sessions n] [-days n] [-end yyyy-mm-dd]
+ * [-minChars n] [-maxChars n] [-tags notes=5,bug=2,...] [-seed n]
+ * [-format xml|binary]
+ */
+public class ArchiveGenerator {
+
+    public static final String DEFAULT_TAG_MIX = "notes=6,bug=2,task=2,issue=2,data=1,environment=1,area=1,timestamp=2";
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final String[] WORDS = {
+        "login", "page", "saved", "file", "crashed", "when", "clicking", "the", "report", "button",
+        "tester@example.com", "timeout", "after", "upload", "of", "large", "image", "@Override", "slow", "again"
+    };
+    private static final String[] TESTERS = {"Jonathan", "Aaron", "Alex", "Sam", "Kim", "Robin"};
+
+    private long seed = BenchmarkData.SEED;
+    private int sessions = 1000;
+    private int days = 365;
+    private long end = 1224252600000L;
+    private int minChars = 512;
+    private int maxChars = 8 * 1024;
+    private String[] tags;
+    private int[] weights;
+    private int totalWeight;
+    private Persistor.Format format = Persistor.Format.XML;
+
+    public ArchiveGenerator() {
+        setTagMix(DEFAULT_TAG_MIX);
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setFormat(Persistor.Format format) {
+        this.format = format;
+    }
+
+    public void setSessions(int sessions) {
+        this.sessions = sessions;
+    }
+
+    /**
+     * Sessions are spread over the days before the end date
+     */
+    public void setDays(int days) {
+        if (days < 1) {
+            throw new IllegalArgumentException("days must be at least 1: " + days);
+        }
+        this.days = days;
+    }
+
+    public void setEnd(Date end) {
+        this.end = end.getTime();
+    }
+
+    /**
+     * The size range of the entry text of each session, in characters
+     */
+    public void setEntrySize(int minChars, int maxChars) {
+        if (minChars < 0 || maxChars < minChars) {
+            throw new IllegalArgumentException("Invalid entry size: " + minChars + ".." + maxChars);
+        }
+        this.minChars = minChars;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Sets how often each tag is used, as comma separated tag=weight
+     * pairs, eg. "notes=5,bug=2,timestamp=1". Tags not in Parser.TAGS are
+     * registered as custom tags, so their blocks are saved as extensions.
+     */
+    public void setTagMix(String tagMix) {
+        List<String> tagList = new ArrayList<String>();
+        List<Integer> weightList = new ArrayList<Integer>();
+        int total = 0;
+
+        for (String pair : tagMix.split(",")) {
+            String[] parts = pair.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected tag=weight: " + pair);
+            }
+            String tag = parts[0].trim();
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                tagList.add(tag.startsWith("@") ? tag : "@" + tag);
+                weightList.add(weight);
+                total += weight;
+            }
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Tag mix has no tags: " + tagMix);
+        }
+
+        tags = tagList.toArray(new String[tagList.size()]);
+        weights = new int[weightList.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = weightList.get(i);
+        }
+        totalWeight = total;
+    }
+
+    /**
+     * Writes the sessions under root and returns the number of files written
+     */
+    public int generate(File root) throws IOException {
+        Random random = new Random(seed);
+        StringBuilder customTags = new StringBuilder();
+        for (String tag : tags) {
+            customTags.append(tag).append(' ');
+        }
+        Parser parser = new Parser(TagRegistry.withCustomTags(customTags.toString()));
+        long span = days * DAY;
+
+        for (int i = 0; i < sessions; i++) {
+            long start = end - (long) (random.nextDouble() * span);
+            int minutes = 15 + random.nextInt(106);
+            int chars = minChars + random.nextInt(maxChars - minChars + 1);
+
+            TestingSession session = parser.parse(entryText(random, chars, start));
+            session.setStart(new Date(start).toString());
+            session.setEnd(new Date(start + minutes * 60000L).toString());
+            session.setDuration(minutes + " min(s)");
+            session.setTester(TESTERS[random.nextInt(TESTERS.length)]);
+            session.setMission("Explore " + WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]);
+
+            //File names have millisecond resolution, so move clashing sessions on
+            File file = FileUtils.buildTestingSessionFile(root, new Date(start));
+            while (file.exists()) {
+                start++;
+                file = FileUtils.buildTestingSessionFile(root, new Date(start));
+            }
+            Persistor.save(file, session, format);
+        }
+
+        return sessions;
+    }
+
+    /**
+     * Builds roughly chars characters of entry text using the tag mix, with
+     * timestamps counting up from start
+     */
+    public String entryText(Random random, int chars, long start) {
+        StringBuilder text = new StringBuilder(chars + 256);
+        long time = start;
+
+        while (text.length() < chars) {
+            String tag = pickTag(random);
+            if (tag.equals("@timestamp")) {
+                time += random.nextInt(10 * 60 * 1000);
+                text.append(tag).append(" [").append(new Date(time)).append("]\n");
+                continue;
+            }
+            text.append(tag).append('\n');
+            int lines = 1 + random.nextInt(4);
+            for (int line = 0; line < lines; line++) {
+                int words = 4 + random.nextInt(12);
+                for (int word = 0; word < words; word++) {
+                    text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                }
+                text.append('\n');
+            }
+            text.append('\n');
+        }
+
+        return text.toString();
+    }
+
+    private String pickTag(Random random) {
+        int n = random.nextInt(totalWeight);
+        for (int i = 0; i < tags.length; i++) {
+            n -= weights[i];
+            if (n < 0) {
+                return tags[i];
+            }
+        }
+        return tags[tags.length - 1];
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || args.length % 2 == 0) {
+            System.err.println("Usage: ArchiveGenerator <directory> [-sessions n] [-days n] [-end yyyy-mm-dd]"
+                    + " [-minChars n] [-maxChars n] [-tags notes=5,bug=2,...] [-seed n] [-format xml|binary]");
+            System.exit(1);
+        }
+
+        ArchiveGenerator generator = new ArchiveGenerator();
+        int minChars = generator.minChars;
+        int maxChars = generator.maxChars;
+        for (int i = 1; i < args.length; i += 2) {
+            String option = args[i];
+            String value = args[i + 1];
+            if (option.equals("-sessions")) {
+                generator.setSessions(Integer.parseInt(value));
+            } else if (option.equals("-days")) {
+                generator.setDays(Integer.parseInt(value));
+            } else if (option.equals("-end")) {
+                generator.setEnd(new SimpleDateFormat("yyyy-MM-dd").parse(value));
+            } else if (option.equals("-minChars")) {
+                minChars = Integer.parseInt(value);
+            } else if (option.equals("-maxChars")) {
+                maxChars = Integer.parseInt(value);
+            } else if (option.equals("-tags")) {
+                generator.setTagMix(value);
+            } else if (option.equals("-seed")) {
+                generator.setSeed(Long.parseLong(value));
+            } else if (option.equals("-format")) {
+                generator.setFormat(Persistor.Format.valueOf(value.toUpperCase()));
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        generator.setEntrySize(minChars, maxChars);
+
+        File root = new File(args[0]);
+        long started = System.currentTimeMillis();
+        int written = generator.generate(root);
+        System.out.println("Wrote " + written + " sessions to " + root.getAbsolutePath()
+                + " in " + (System.currentTimeMillis() - started) + " ms");
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Random;
+import sessiontester.Parser;
+import sessiontester.TestingSession;
+
+/**
+ * Synthetic inputs shared by the benchmarks. Generated from a fixed seed
+ * so every run measures the same data.
+ */
+public class BenchmarkData {
+
+    public static final long SEED = 20081017L;
+
+    /**
+     * Entry text sizes for the small, medium and huge parameters
+     */
+    public static int sizeOf(String size) {
+        if (size.equals("small")) {
+            return 2 * 1024;
+        } else if (size.equals("medium")) {
+            return 64 * 1024;
+        } else if (size.equals("huge")) {
+            return 1024 * 1024;
+        }
+        throw new IllegalArgumentException("Unknown size: " + size);
+    }
+
+    /**
+     * Builds roughly chars characters of entry text as a tester would type it
+     */
+    public static String entryText(int chars) {
+        return new ArchiveGenerator().entryText(new Random(SEED), chars, 1224252600000L);
+    }
+
+    public static TestingSession session(int chars) {
+        TestingSession session = new Parser().parse(entryText(chars));
+        session.setStart(new Date(1224252600000L).toString());
+        session.setEnd(new Date(1224258000000L).toString());
+        session.setDuration("90 min(s)");
+        session.setTester("Benchmark");
+        session.setMission("Measure the hot paths");
+        return session;
+    }
+
+    /**
+     * Writes an archive of sessions with entry texts of about chars characters
+     */
+    public static void writeArchive(File root, int sessions, int chars) throws IOException {
+        ArchiveGenerator generator = new ArchiveGenerator();
+        generator.setSessions(sessions);
+        generator.setEntrySize(chars, chars);
+        generator.generate(root);
+    }
+
+    public static File createTempDirectory(String prefix) throws IOException {
+        File directory = File.createTempFile(prefix, "");
+        directory.delete();
+        directory.mkdirs();
+        return directory;
+    }
+
+    public static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
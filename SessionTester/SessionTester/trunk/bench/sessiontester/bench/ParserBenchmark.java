@@ -0,0 +1,69 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sessiontester.Parser;
+import sessiontester.TestingSession;
+
+/**
+ * Parser.parse on small, medium and huge entry texts
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"small", "medium", "huge"})
+    public String size;
+
+    private String entryText;
+
+    @Setup
+    public void setUp() {
+        entryText = BenchmarkData.entryText(BenchmarkData.sizeOf(size));
+    }
+
+    @Benchmark
+    public TestingSession parse() {
+        return new Parser().parse(entryText);
+    }
+
+    /**
+     * Includes joining the entries into the field strings, as a save does
+     */
+    @Benchmark
+    public void parseAndReadFields(Blackhole blackhole) {
+        TestingSession session = new Parser().parse(entryText);
+        blackhole.consume(session.getNotes());
+        blackhole.consume(session.getBugs());
+        blackhole.consume(session.getTasks());
+        blackhole.consume(session.getIssues());
+        blackhole.consume(session.getData());
+        blackhole.consume(session.getEnvironment());
+        blackhole.consume(session.getArea());
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester.bench;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sessiontester.Persistor;
+import sessiontester.TestingSession;
+
+/**
+ * Persistor.save, Persistor.load and Persistor.loadHeader of a session
+ * holding small, medium and huge entry texts
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PersistorBenchmark {
+
+    @Param({"small", "medium", "huge"})
+    public String size;
+
+    private File directory;
+    private File saveFile;
+    private File loadFile;
+    private TestingSession session;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = BenchmarkData.createTempDirectory("persistor_bench");
+        session = BenchmarkData.session(BenchmarkData.sizeOf(size));
+        saveFile = new File(directory, "save.xml");
+        loadFile = Persistor.save(new File(directory, "load.xml"), session);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.delete(directory);
+    }
+
+    @Benchmark
+    public File save() throws Exception {
+        return Persistor.save(saveFile, session);
+    }
+
+    @Benchmark
+    public TestingSession load() throws Exception {
+        return Persistor.load(loadFile);
+    }
+
+    @Benchmark
+    public TestingSession loadHeader() throws Exception {
+        return Persistor.loadHeader(loadFile);
+    }
+
+    @Benchmark
+    public TestingSession roundTrip() throws Exception {
+        return Persistor.load(Persistor.save(saveFile, session));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sessiontester.Parser;
+import sessiontester.TestingSession;
+
+/**
+ * Parser.parse on the adversarial inputs of ParserStressTest, each at two
+ * sizes eight times apart. Linear parsing scores about eight times higher
+ * at the larger size; quadratic parsing about sixty-four times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScalingBenchmark {
+
+    @Param({"longLine", "midLineAt", "nearTags", "whitespace", "unclosedTimestamps", "manyBlocks"})
+    public String input;
+
+    @Param({"131072", "1048576"})
+    public int size;
+
+    private String entryText;
+
+    @Setup
+    public void setUp() {
+        String prefix;
+        String fragment;
+        if (input.equals("longLine")) {
+            prefix = "@notes\n";
+            fragment = "x";
+        } else if (input.equals("midLineAt")) {
+            prefix = "@notes\n";
+            fragment = "tester@example.com @Override @bug ";
+        } else if (input.equals("nearTags")) {
+            prefix = "";
+            fragment = "\n@bugs\n@no\n@\n@notes x\n@bug";
+        } else if (input.equals("whitespace")) {
+            prefix = "";
+            fragment = "\n@notes        \t  \n\n\n  \n";
+        } else if (input.equals("unclosedTimestamps")) {
+            prefix = "";
+            fragment = "\n@timestamp [ no closing bracket";
+        } else if (input.equals("manyBlocks")) {
+            prefix = "LEADING";
+            fragment = "\n@bug\nBUG\n@notes\nNOTE";
+        } else {
+            throw new IllegalArgumentException("Unknown input: " + input);
+        }
+        StringBuilder text = new StringBuilder(prefix);
+        while (text.length() < size) {
+            text.append(fragment);
+        }
+        entryText = text.toString();
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        TestingSession session = new Parser().parse(entryText);
+        blackhole.consume(session.getNotes());
+        blackhole.consume(session.getBugs());
+        blackhole.consume(session.getTimeline().size());
+    }
+}
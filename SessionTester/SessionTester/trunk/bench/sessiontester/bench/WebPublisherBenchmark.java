@@ -0,0 +1,77 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester.bench;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sessiontester.FileUtils;
+import sessiontester.publisher.WebPublisher;
+
+/**
+ * WebPublisher.publishTo over a synthetic archive of sessions
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WebPublisherBenchmark {
+
+    @Param({"100", "1000"})
+    public int sessions;
+
+    private File originalSessionTesterDir;
+    private File archive;
+    private File reports;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        originalSessionTesterDir = FileUtils.SESSION_TESTER_DIR;
+        archive = BenchmarkData.createTempDirectory("archive_bench");
+        BenchmarkData.writeArchive(archive, sessions, 8 * 1024);
+        FileUtils.SESSION_TESTER_DIR = archive;
+    }
+
+    @Setup(Level.Iteration)
+    public void createReportDirectory() throws Exception {
+        reports = BenchmarkData.createTempDirectory("report_bench");
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteReportDirectory() {
+        BenchmarkData.delete(reports);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileUtils.SESSION_TESTER_DIR = originalSessionTesterDir;
+        BenchmarkData.delete(archive);
+    }
+
+    @Benchmark
+    public void publishTo() throws Exception {
+        new WebPublisher().publishTo(reports);
+    }
+}
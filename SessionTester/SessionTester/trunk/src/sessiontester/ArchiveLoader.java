@@ -0,0 +1,306 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads every session under an archive directory on a fixed pool of
+ * threads, handing them to the caller in archive order.
+ *
+ * Only a few sessions per thread are ever in flight: the next one is
+ * submitted as the oldest is handed over, so memory stays bounded no
+ * matter how big the archive is.
+ *
+ * Loading the sessions of a date range only lists the year, month and
+ * day directories that can hold them, so it costs the same however many
+ * years the archive goes back.
+ */
+class ArchiveLoader {
+
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+
+    /**
+     * A session file, or an entry of the pack in its directory
+     */
+    private static class Location {
+
+        final File file;
+        final SessionPack pack;
+        long time;
+
+        Location(File file, SessionPack pack) {
+            this.file = file;
+            this.pack = pack;
+        }
+
+        TestingSession load() throws IOException {
+            return (pack != null) ? pack.load(file.getName()) : Persistor.load(file);
+        }
+    }
+
+    private static final Comparator<Location> BY_TIME = new Comparator<Location>() {
+
+        @Override
+        public int compare(Location a, Location b) {
+            return (a.time < b.time) ? -1 : ((a.time == b.time) ? 0 : 1);
+        }
+    };
+
+    /**
+     * The times from up to but not including to, with the year, month and
+     * day directories of the first and last millisecond
+     */
+    private static class Range {
+
+        final long from;
+        final long to;
+        final int[] first;
+        final int[] last;
+
+        Range(Date from, Date to) {
+            this.from = from.getTime();
+            this.to = to.getTime();
+            this.first = days(this.from);
+            this.last = days(this.to - 1);
+        }
+
+        boolean isEmpty() {
+            return from >= to;
+        }
+
+        boolean contains(long time) {
+            return time >= from && time < to;
+        }
+
+        /**
+         * Whether the directory with the first depth numbers of path can
+         * hold sessions in the range
+         */
+        boolean overlaps(int[] path, int depth) {
+            return compare(path, first, depth) >= 0 && compare(path, last, depth) <= 0;
+        }
+
+        private static int compare(int[] path, int[] bound, int depth) {
+            for (int i = 0; i < depth; i++) {
+                if (path[i] != bound[i]) {
+                    return (path[i] < bound[i]) ? -1 : 1;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * The year, month and day directories FileUtils.buildTestingSessionFile
+         * puts a session started at time in
+         */
+        private static int[] days(long time) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(time);
+            return new int[]{calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH)};
+        }
+    }
+
+    private final int threads;
+
+    ArchiveLoader(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    void loadAll(File root, FileFilter filter, Persistor.Visitor visitor) throws IOException {
+        List<Location> locations = new ArrayList<Location>();
+        list(root, filter, locations);
+        load(locations, visitor);
+    }
+
+    /**
+     * Loads the sessions started from from up to but not including to,
+     * in the order they started. A session is dated by the time stamp in
+     * its name, or when that is missing by its modification time.
+     */
+    void loadBetween(File root, Date from, Date to, FileFilter filter, Persistor.Visitor visitor) throws IOException {
+        Range range = new Range(from, to);
+        if (range.isEmpty()) {
+            return;
+        }
+        List<Location> locations = new ArrayList<Location>();
+        list(root, filter, range, new int[3], 0, locations);
+        load(locations, visitor);
+    }
+
+    private void load(List<Location> locations, Persistor.Visitor visitor) throws IOException {
+        if (locations.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, locations.size()), new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Session loader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            LinkedList<Future<TestingSession>> inFlight = new LinkedList<Future<TestingSession>>();
+            int submitted = 0;
+            for (int delivered = 0; delivered < locations.size(); delivered++) {
+                while (submitted < locations.size() && inFlight.size() < threads * IN_FLIGHT_PER_THREAD) {
+                    final Location location = locations.get(submitted++);
+                    inFlight.add(executor.submit(new Callable<TestingSession>() {
+
+                        @Override
+                        public TestingSession call() throws IOException {
+                            return location.load();
+                        }
+                    }));
+                }
+                visitor.visit(locations.get(delivered).file, get(inFlight.removeFirst(), locations.get(delivered).file));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static TestingSession get(Future<TestingSession> future, File file) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted loading " + file, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Could not load " + file, e.getCause());
+        }
+    }
+
+    /**
+     * Adds the sessions under directory in natural name order. Sessions in
+     * a pack are listed as the files they were packed from, unless that
+     * file has been saved again since.
+     */
+    private static void list(File directory, FileFilter filter, List<Location> locations) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        List<File> children = new ArrayList<File>(Arrays.asList(files));
+        SessionPack pack = null;
+        File packFile = new File(directory, SessionPack.FILE_NAME);
+        if (packFile.isFile()) {
+            pack = SessionPack.open(packFile);
+            for (String name : pack.getNames()) {
+                File file = new File(directory, name);
+                if (!file.exists() && !new File(directory, name + Persistor.COMPRESSED_SUFFIX).exists()) {
+                    children.add(file);
+                }
+            }
+        }
+        Collections.sort(children, FileUtils.NATURAL_ORDER);
+
+        for (File child : children) {
+            if (pack != null && pack.contains(child.getName()) && !child.exists()) {
+                if (filter == null || filter.accept(child)) {
+                    locations.add(new Location(child, pack));
+                }
+            } else if (child.isDirectory()) {
+                list(child, filter, locations);
+            } else if (SessionPack.entryName(child) != null && (filter == null || filter.accept(child))) {
+                locations.add(new Location(child, null));
+            }
+        }
+    }
+
+    /**
+     * Adds the sessions in range under a directory, those directly in it
+     * first in time order, then those in its subdirectories. The first
+     * depth numbers of path are the year, month and day directories it is
+     * in; path is null outside that layout, where nothing can be skipped.
+     */
+    private static void list(File directory, FileFilter filter, Range range, int[] path, int depth, List<Location> locations) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        List<Location> sessions = new ArrayList<Location>();
+        List<File> subdirectories = new ArrayList<File>();
+        SessionPack pack = null;
+        File packFile = new File(directory, SessionPack.FILE_NAME);
+        if (packFile.isFile()) {
+            pack = SessionPack.open(packFile);
+            for (String name : pack.getNames()) {
+                File file = new File(directory, name);
+                if (!file.exists() && !new File(directory, name + Persistor.COMPRESSED_SUFFIX).exists()) {
+                    add(new Location(file, pack), pack.getModified(name), filter, range, sessions);
+                }
+            }
+        }
+        for (File child : files) {
+            if (child.isDirectory()) {
+                subdirectories.add(child);
+            } else if (SessionPack.entryName(child) != null) {
+                add(new Location(child, null), child.lastModified(), filter, range, sessions);
+            }
+        }
+        Collections.sort(sessions, BY_TIME);
+        locations.addAll(sessions);
+
+        Collections.sort(subdirectories, FileUtils.NATURAL_ORDER);
+        for (File subdirectory : subdirectories) {
+            int[] subdirectoryPath = null;
+            if (path != null && depth < path.length) {
+                try {
+                    subdirectoryPath = path.clone();
+                    subdirectoryPath[depth] = Integer.parseInt(subdirectory.getName());
+                } catch (NumberFormatException e) {
+                    subdirectoryPath = null;
+                }
+            }
+            if (subdirectoryPath == null) {
+                list(subdirectory, filter, range, null, 0, locations);
+            } else if (range.overlaps(subdirectoryPath, depth + 1)) {
+                list(subdirectory, filter, range, subdirectoryPath, depth + 1, locations);
+            }
+        }
+    }
+
+    private static void add(Location location, long modified, FileFilter filter, Range range, List<Location> sessions) {
+        long time = SessionCatalog.parseTimeStamp(location.file.getName());
+        location.time = (time != -1) ? time : modified;
+        if (range.contains(location.time) && (filter == null || filter.accept(location.file))) {
+            sessions.add(location);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+
+/**
+ * Saves the session after edits, either once typing pauses for the idle
+ * gap or, during continuous typing, once the interval has passed since
+ * the last save. Nothing is saved while the text is unchanged.
+ *
+ * Runs on the event dispatch thread; the save itself is expected to hand
+ * a snapshot to a SessionWriter rather than write to disk.
+ */
+public class Autosave implements DocumentListener, ActionListener {
+
+    private final Document document;
+    private final Runnable save;
+    private final long interval;
+    private final long idleGap;
+    private final Timer timer;
+    private boolean dirty;
+    private long lastEdit;
+    private long lastSave;
+
+    public Autosave(Document document, long intervalMillis, long idleGapMillis, Runnable save) {
+        this.document = document;
+        this.save = save;
+        this.interval = intervalMillis;
+        this.idleGap = idleGapMillis;
+        this.timer = new Timer((int) Math.max(10, Math.min(intervalMillis, idleGapMillis) / 4), this);
+        document.addDocumentListener(this);
+    }
+
+    public void start() {
+        dirty = false;
+        lastSave = System.currentTimeMillis();
+        timer.start();
+    }
+
+    public void stop() {
+        timer.stop();
+        dirty = false;
+    }
+
+    public void detach() {
+        stop();
+        document.removeDocumentListener(this);
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Marks the text as saved, eg. after the user saved it
+     */
+    public void saved() {
+        dirty = false;
+        lastSave = System.currentTimeMillis();
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        long now = System.currentTimeMillis();
+        if (dirty && (now - lastEdit >= idleGap || now - lastSave >= interval)) {
+            saved();
+            save.run();
+        }
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        edited();
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        edited();
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+        //Attribute changes do not affect the text
+    }
+
+    private void edited() {
+        if (timer.isRunning()) {
+            dirty = true;
+            lastEdit = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A compact encoding of a TestingSession: the magic bytes, then one record
+ * per non-empty field, made of a varint field id, a varint length and that
+ * many bytes of UTF-8.
+ *
+ * Field ids are Persistor.FIELDS indexes plus one, so the header fields
+ * come first and a header-only read can stop early. An extension record
+ * holds the name's varint length and UTF-8 bytes followed by the value.
+ * A timeline record holds the varint marker count, then for each marker
+ * the varint millis since the previous one and its varint entry index.
+ * Readers skip ids they do not know.
+ */
+class BinarySessionFormat {
+
+    static final byte[] MAGIC = {'S', 'T', 'B', 1};
+    private static final int EXTENSION = Persistor.FIELDS.length + 1;
+    private static final int TIMELINE = Persistor.FIELDS.length + 2;
+    private static final String UTF8 = "UTF-8";
+    /**
+     * Far beyond any typed session; a longer record means a corrupt file
+     */
+    static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+    static boolean isBinary(byte[] head, int length) {
+        if (length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (head[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static void write(OutputStream out, TestingSession session) throws IOException {
+        out.write(MAGIC);
+        for (int i = 0; i < Persistor.FIELDS.length; i++) {
+            String value = Persistor.getField(session, i);
+            if (value.length() > 0) {
+                byte[] bytes = value.getBytes(UTF8);
+                writeVarint(out, i + 1);
+                writeVarint(out, bytes.length);
+                out.write(bytes);
+            }
+        }
+        for (String name : session.getExtensionNames()) {
+            byte[] nameBytes = name.getBytes(UTF8);
+            byte[] valueBytes = session.getExtension(name).getBytes(UTF8);
+            writeVarint(out, EXTENSION);
+            writeVarint(out, varintSize(nameBytes.length) + nameBytes.length + valueBytes.length);
+            writeVarint(out, nameBytes.length);
+            out.write(nameBytes);
+            out.write(valueBytes);
+        }
+        Timeline timeline = session.getTimeline();
+        if (timeline != null) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            writeVarint(bytes, timeline.size());
+            long previous = 0;
+            for (int i = 0; i < timeline.size(); i++) {
+                writeVarlong(bytes, timeline.getMillis(i) - previous);
+                writeVarint(bytes, timeline.getEntryIndex(i));
+                previous = timeline.getMillis(i);
+            }
+            writeVarint(out, TIMELINE);
+            writeVarint(out, bytes.size());
+            bytes.writeTo(out);
+        }
+    }
+
+    /**
+     * Reads the records after the magic bytes into session
+     */
+    static void read(InputStream stream, TestingSession session, boolean headerOnly) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!isBinary(magic, magic.length)) {
+            throw new IOException("Not a binary session");
+        }
+
+        int id;
+        while ((id = readVarint(in)) != -1) {
+            if (headerOnly && id > Persistor.HEADER_FIELDS) {
+                return;
+            }
+            int length = readVarint(in);
+            if (length == -1) {
+                throw new EOFException("Truncated binary session");
+            }
+            if (length < 0 || length > MAX_RECORD_LENGTH) {
+                throw new IOException("Record length " + (length & 0xffffffffL) + " is out of range");
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+
+            if (id >= 1 && id <= Persistor.FIELDS.length) {
+                Persistor.setField(session, id - 1, new String(bytes, UTF8));
+            } else if (id == EXTENSION) {
+                int[] position = {0};
+                int nameLength = readVarint(bytes, position);
+                int nameStart = position[0];
+                if (nameLength < 0 || nameLength > length - nameStart) {
+                    throw new IOException("Extension name length " + (nameLength & 0xffffffffL) + " is out of range");
+                }
+                String name = new String(bytes, nameStart, nameLength, UTF8);
+                session.setExtension(name, new String(bytes, nameStart + nameLength, length - nameStart - nameLength, UTF8));
+            } else if (id == TIMELINE) {
+                session.setTimeline(readTimeline(bytes));
+            }
+        }
+    }
+
+    private static Timeline readTimeline(byte[] bytes) throws IOException {
+        int[] position = {0};
+        int count = readVarint(bytes, position);
+        //Each marker takes at least two bytes
+        if (count < 0 || count > bytes.length / 2) {
+            throw new IOException("Timeline marker count " + (count & 0xffffffffL) + " is out of range");
+        }
+        Timeline timeline = new Timeline();
+        long millis = 0;
+        for (int i = 0; i < count; i++) {
+            millis += readVarlong(bytes, position);
+            timeline.add(millis, readVarint(bytes, position));
+        }
+        return timeline;
+    }
+
+    static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeVarlong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7f) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the varint at the stream's position, or -1 at the end
+     */
+    static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b == -1) {
+                if (shift == 0) {
+                    return -1;
+                }
+                throw new EOFException("Truncated varint");
+            }
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static int readVarint(byte[] bytes, int[] position) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32 && position[0] < bytes.length; shift += 7) {
+            int b = bytes[position[0]++];
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long readVarlong(byte[] bytes, int[] position) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64 && position[0] < bytes.length; shift += 7) {
+            int b = bytes[position[0]++];
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
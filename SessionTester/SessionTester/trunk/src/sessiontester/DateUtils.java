@@ -10,9 +10,12 @@
  */
 package sessiontester;
 
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.Locale;
 
 /**
  * Repository of shared date functions
@@ -20,6 +23,9 @@ import java.util.GregorianCalendar;
  */
 public class DateUtils {
 
+    //Format of Date.toString(), which the client uses for @timestamp
+    private static final String DATE_STRING_FORMAT = "EEE MMM dd HH:mm:ss zzz yyyy";
+
     public static int getYear(Date date) {
         Calendar cal = new GregorianCalendar();
         cal.setTime(date);
@@ -62,4 +68,7 @@ public class DateUtils {
         return cal.get(Calendar.MILLISECOND);
     }
 
+    public static Date parseDateString(String s) throws ParseException {
+        return new SimpleDateFormat(DATE_STRING_FORMAT, Locale.US).parse(s);
+    }
 }
@@ -0,0 +1,440 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/**
+ * An append-only journal of the session in progress, so a crash loses at
+ * most a few seconds of typing.
+ *
+ * The journal starts with the session details and the entry text, then
+ * records every insert and remove. Each record is framed by its length
+ * and a CRC32, so recovery stops cleanly at a record torn by the crash.
+ * Records are buffered in memory and group committed to disk, with a
+ * sync, every commit interval. Once the edits outgrow the text the
+ * journal is restarted from the current text.
+ *
+ * begin, end and the document events are confined to the event dispatch
+ * thread; only the commits run in the background.
+ */
+public class EditJournal implements DocumentListener {
+
+    /**
+     * A session replayed from a journal
+     */
+    public static class Recovery {
+
+        private final File sessionFile;
+        private final Date start;
+        private final String tester;
+        private final String mission;
+        private final String text;
+
+        Recovery(File sessionFile, Date start, String tester, String mission, String text) {
+            this.sessionFile = sessionFile;
+            this.start = start;
+            this.tester = tester;
+            this.mission = mission;
+            this.text = text;
+        }
+
+        public File getSessionFile() {
+            return sessionFile;
+        }
+
+        public Date getStart() {
+            return start;
+        }
+
+        public String getTester() {
+            return tester;
+        }
+
+        public String getMission() {
+            return mission;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+
+    private static final byte START = 1;
+    private static final byte INSERT = 2;
+    private static final byte REMOVE = 3;
+    private static final int MAX_RECORD = 64 * 1024 * 1024;
+    private static final int COMPACT_THRESHOLD = 1024 * 1024;
+    private static final Logger logger = Logger.getLogger(EditJournal.class.getName());
+
+    private final File file;
+    private final Document document;
+    private final ScheduledExecutorService committer;
+    private final Runnable commit = new Runnable() {
+
+        @Override
+        public void run() {
+            commit();
+        }
+    };
+    //Guarded by this
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private boolean restart;
+    private boolean delete;
+    //Confined to the committer thread
+    private FileOutputStream stream;
+    //Confined to the event dispatch thread
+    private boolean active;
+    private File sessionFile;
+    private Date start;
+    private String tester;
+    private String mission;
+    private long written;
+
+    public EditJournal(File file, Document document, long commitIntervalMillis) {
+        this.file = file;
+        this.document = document;
+        this.committer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Edit journal");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        committer.scheduleWithFixedDelay(commit, commitIntervalMillis, commitIntervalMillis, TimeUnit.MILLISECONDS);
+        document.addDocumentListener(this);
+    }
+
+    /**
+     * Starts journaling a session, replacing any previous journal
+     */
+    public void begin(File sessionFile, Date start, String tester, String mission) {
+        this.sessionFile = sessionFile;
+        this.start = start;
+        this.tester = tester;
+        this.mission = mission;
+        this.active = true;
+        restart();
+    }
+
+    /**
+     * Deletes the journal once the session is safely saved
+     */
+    public void end() {
+        active = false;
+        synchronized (this) {
+            buffer.reset();
+            restart = false;
+            delete = true;
+        }
+        committer.execute(commit);
+    }
+
+    /**
+     * Commits what is buffered and stops the background commits
+     */
+    public void close() throws InterruptedException {
+        document.removeDocumentListener(this);
+        committer.execute(commit);
+        committer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    closeStream();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Could not close the edit journal", e);
+                }
+            }
+        });
+        committer.shutdown();
+        committer.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        if (active) {
+            Record record = new Record(INSERT);
+            record.writeInt(e.getOffset());
+            record.writeString(getText(e.getOffset(), e.getLength()));
+            append(record);
+        }
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        if (active) {
+            Record record = new Record(REMOVE);
+            record.writeInt(e.getOffset());
+            record.writeInt(e.getLength());
+            append(record);
+        }
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+        //Attribute changes do not affect the text
+    }
+
+    private void append(Record record) {
+        byte[] bytes = record.toByteArray();
+        written += bytes.length;
+        if (written > COMPACT_THRESHOLD && written > 4L * document.getLength()) {
+            restart();
+            return;
+        }
+        synchronized (this) {
+            buffer.write(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Replaces the journal with the session details and the current text
+     */
+    private void restart() {
+        Record header = new Record(START);
+        header.writeString(sessionFile.getPath());
+        header.writeLong(start.getTime());
+        header.writeString(tester);
+        header.writeString(mission);
+        Record text = new Record(INSERT);
+        text.writeInt(0);
+        text.writeString(getText(0, document.getLength()));
+
+        byte[] headerBytes = header.toByteArray();
+        byte[] textBytes = text.toByteArray();
+        written = headerBytes.length + textBytes.length;
+        synchronized (this) {
+            buffer.reset();
+            buffer.write(headerBytes, 0, headerBytes.length);
+            buffer.write(textBytes, 0, textBytes.length);
+            restart = true;
+            delete = false;
+        }
+        committer.execute(commit);
+    }
+
+    private void commit() {
+        byte[] bytes;
+        boolean restartFile;
+        boolean deleteFile;
+        synchronized (this) {
+            bytes = buffer.toByteArray();
+            buffer.reset();
+            restartFile = restart;
+            deleteFile = delete;
+            restart = false;
+            delete = false;
+        }
+
+        try {
+            if (deleteFile || restartFile) {
+                closeStream();
+            }
+            if (deleteFile) {
+                file.delete();
+            } else if (restartFile) {
+                //Write the new journal aside so the old one survives a crash meanwhile
+                File temp = new File(file.getPath() + ".tmp");
+                FileOutputStream out = new FileOutputStream(temp);
+                try {
+                    out.write(bytes);
+                    out.getFD().sync();
+                } finally {
+                    out.close();
+                }
+                FileUtils.replace(temp, file);
+            } else if (bytes.length > 0) {
+                if (stream == null) {
+                    stream = new FileOutputStream(file, true);
+                }
+                stream.write(bytes);
+                stream.getFD().sync();
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not write the edit journal", e);
+        }
+    }
+
+    private void closeStream() throws IOException {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+    }
+
+    /**
+     * Replays the journal in file, stopping at the first damaged record.
+     * Returns null if there is no journal to recover.
+     */
+    public static Recovery recover(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            Recovery header = null;
+            StringBuilder text = new StringBuilder();
+            byte[] payload;
+            while ((payload = readRecord(in)) != null) {
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = record.readByte();
+                if (type == START) {
+                    header = new Recovery(new File(readString(record)), new Date(record.readLong()), readString(record), readString(record), null);
+                    text.setLength(0);
+                } else if (header == null) {
+                    break;
+                } else if (type == INSERT) {
+                    int offset = record.readInt();
+                    String inserted = readString(record);
+                    if (offset > text.length()) {
+                        break;
+                    }
+                    text.insert(offset, inserted);
+                } else if (type == REMOVE) {
+                    int offset = record.readInt();
+                    int length = record.readInt();
+                    if (offset + length > text.length()) {
+                        break;
+                    }
+                    text.delete(offset, offset + length);
+                } else {
+                    break;
+                }
+            }
+
+            if (header == null) {
+                return null;
+            }
+            return new Recovery(header.getSessionFile(), header.getStart(), header.getTester(), header.getMission(), text.toString());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the next record's payload, or null at the end of the journal
+     * or at a torn or corrupt record
+     */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            if (length < 1 || length > MAX_RECORD) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            int checksum = in.readInt();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return ((int) crc.getValue() == checksum) ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private String getText(int offset, int length) {
+        try {
+            return document.getText(offset, length);
+        } catch (BadLocationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Builds one record: the payload framed by its length and checksum
+     */
+    private static class Record {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream payload = new DataOutputStream(bytes);
+
+        Record(byte type) {
+            try {
+                payload.writeByte(type);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        void writeInt(int value) {
+            try {
+                payload.writeInt(value);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        void writeLong(long value) {
+            try {
+                payload.writeLong(value);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        void writeString(String value) {
+            try {
+                byte[] utf8 = value.getBytes("UTF-8");
+                payload.writeInt(utf8.length);
+                payload.write(utf8);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        byte[] toByteArray() {
+            byte[] body = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            ByteArrayOutputStream framed = new ByteArrayOutputStream(body.length + 8);
+            DataOutputStream out = new DataOutputStream(framed);
+            try {
+                out.writeInt(body.length);
+                out.write(body);
+                out.writeInt((int) crc.getValue());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return framed.toByteArray();
+        }
+    }
+}
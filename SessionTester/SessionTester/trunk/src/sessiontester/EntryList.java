@@ -0,0 +1,105 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+/**
+ * The ordered entries parsed out of a session's entry text.
+ *
+ * Each entry is a tag id (from the TagRegistry it was parsed with) and the start/end
+ * offsets of its content in the source text, along with the index of the
+ * @timestamp entry in effect at that point. Entries are kept in parallel
+ * int arrays rather than as objects so that long sessions stay compact.
+ */
+public class EntryList {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String source;
+    private final TagRegistry registry;
+    private int size;
+    private int[] tags = new int[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private int[] timestamps = new int[INITIAL_CAPACITY];
+    private int lastTimestamp = -1;
+
+    public EntryList(String source, TagRegistry registry) {
+        this.source = source;
+        this.registry = registry;
+    }
+
+    void add(int tag, int start, int end) {
+        if (size == tags.length) {
+            grow();
+        }
+        if (tag == Parser.TIMESTAMP) {
+            lastTimestamp = size;
+        }
+        tags[size] = tag;
+        starts[size] = start;
+        ends[size] = end;
+        timestamps[size] = lastTimestamp;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = tags.length * 2;
+        tags = copyOf(tags, capacity);
+        starts = copyOf(starts, capacity);
+        ends = copyOf(ends, capacity);
+        timestamps = copyOf(timestamps, capacity);
+    }
+
+    private static int[] copyOf(int[] array, int capacity) {
+        int[] result = new int[capacity];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getTag(int index) {
+        return tags[index];
+    }
+
+    /**
+     * The tag of the entry with its leading '@', in lower case
+     */
+    public String getTagName(int index) {
+        return registry.getTag(tags[index]);
+    }
+
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    /**
+     * Index of the nearest @timestamp entry at or before index, or -1 if
+     * no timestamp precedes it
+     */
+    public int getTimestampEntry(int index) {
+        return timestamps[index];
+    }
+
+    public String getText(int index) {
+        return source.substring(starts[index], ends[index]);
+    }
+}
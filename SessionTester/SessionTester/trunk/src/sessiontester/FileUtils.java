@@ -17,6 +17,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 
@@ -29,6 +30,20 @@ public class FileUtils {
     public static File HOME_DIR = new File(System.getProperty("user.home"));
     public static File SESSION_TESTER_DIR = new File(HOME_DIR, ".sessiontester");
     public static String PRIMING_FILE_NAME = "priming.txt";
+    public static final String SESSION_FILE_PREFIX = "testing_session_";
+
+    /**
+     * Orders file names with runs of digits compared as numbers, so the
+     * unpadded year/month/day directories and session time stamps sort
+     * chronologically, eg. 9 before 10
+     */
+    public static final Comparator<File> NATURAL_ORDER = new Comparator<File>() {
+
+        @Override
+        public int compare(File a, File b) {
+            return compareNames(a.getName(), b.getName());
+        }
+    };
 
     public static void writeToFile(File file, String string) throws IOException {
         PrintStream stream = null;
@@ -37,13 +52,68 @@ public class FileUtils {
             stream = new PrintStream(file);
             stream.print(string);
         } finally {
-            stream.close();
+            if (stream != null) {
+                stream.close();
+            }
         }
 
     }
 
+    /**
+     * Moves source over target. The rename is atomic where the platform
+     * allows it; Windows cannot rename onto an existing file, so there
+     * target is deleted first and source is left in place if the rename
+     * still fails.
+     */
+    public static void replace(File source, File target) throws IOException {
+        if (source.renameTo(target)) {
+            return;
+        }
+        if (target.exists() && !target.delete()) {
+            throw new IOException("Could not replace " + target);
+        }
+        if (!source.renameTo(target)) {
+            throw new IOException("Could not rename " + source + " to " + target);
+        }
+    }
+
    
 
+    static int compareNames(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(j);
+            if (Character.isDigit(ca) && Character.isDigit(cb)) {
+                int endA = i;
+                while (endA < a.length() && Character.isDigit(a.charAt(endA))) {
+                    endA++;
+                }
+                int endB = j;
+                while (endB < b.length() && Character.isDigit(b.charAt(endB))) {
+                    endB++;
+                }
+                //Without leading zeros the longer run is the larger number
+                String runA = a.substring(i, endA).replaceFirst("^0+(?=.)", "");
+                String runB = b.substring(j, endB).replaceFirst("^0+(?=.)", "");
+                int result = (runA.length() != runB.length()) ? runA.length() - runB.length() : runA.compareTo(runB);
+                if (result != 0) {
+                    return result;
+                }
+                i = endA;
+                j = endB;
+            } else {
+                if (ca != cb) {
+                    return ca - cb;
+                }
+                i++;
+                j++;
+            }
+        }
+        return (a.length() - i) - (b.length() - j);
+    }
+
     public static List<String> parseResourceFileIntoList(String fileName) throws IOException {
         List<String> result = new ArrayList<String>();
         InputStream stream = ClassLoader.getSystemResourceAsStream(fileName);
@@ -69,13 +139,30 @@ public class FileUtils {
     }
 
     public static File buildTestingSessionFileFromCurrentTime() {
-        Date now = new Date();
-        String year = Integer.toString(DateUtils.getYear(now));
-        String month = Integer.toString(DateUtils.getMonthOfYear(now));
-        String day = Integer.toString(DateUtils.getDayOfMonth(now));
-        File path = new File(new File(new File(FileUtils.SESSION_TESTER_DIR, year), month), day);
+        return buildTestingSessionFile(FileUtils.SESSION_TESTER_DIR, new Date());
+    }
+
+    /**
+     * The file for a session started at date, in the year/month/day
+     * directories under root
+     */
+    public static File buildTestingSessionFile(File root, Date date) {
+        String year = Integer.toString(DateUtils.getYear(date));
+        String month = Integer.toString(DateUtils.getMonthOfYear(date));
+        String day = Integer.toString(DateUtils.getDayOfMonth(date));
+        File path = new File(new File(new File(root, year), month), day);
         path.mkdirs(); //Creates directory if it does not exist
 
-        return new File(path, "testing_session_" + buildTimeStamp(now) + ".xml");
+        return new File(path, SESSION_FILE_PREFIX + buildTimeStamp(date) + ".xml");
+    }
+
+    /**
+     * Whether file is named like the files of buildTestingSessionFile,
+     * compressed or not
+     */
+    public static boolean isSessionFile(File file) {
+        String name = file.getName();
+        return name.startsWith(SESSION_FILE_PREFIX)
+                && (name.endsWith(".xml") || name.endsWith(".xml" + Persistor.COMPRESSED_SUFFIX));
     }
 }
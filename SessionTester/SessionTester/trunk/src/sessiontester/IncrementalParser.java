@@ -0,0 +1,196 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/**
+ * Keeps the entry text parsed while it is being edited.
+ *
+ * The document is held as a list of blocks split at every line starting
+ * with '@', the same boundaries Parser uses. An edit only re-tokenizes the
+ * blocks it touched, so building a TestingSession only copies the text
+ * and never re-parses it.
+ *
+ * Like the Swing document it listens to, this class is confined to the
+ * event dispatch thread.
+ */
+public class IncrementalParser implements DocumentListener {
+
+    /**
+     * A block of entry text. Every block except the last is followed by
+     * the newline that separates it from the next '@'. The entry offsets
+     * are relative to the block start so they survive edits before it.
+     */
+    private static class Block {
+
+        int start;
+        int tag = -1;
+        int entryStart;
+        int entryEnd;
+        long time = Parser.NO_TIME;
+        boolean leading;
+    }
+
+    private final Parser parser;
+    private final TagRegistry registry;
+    private final List<Block> blocks = new ArrayList<Block>();
+    private final Document document;
+
+    public IncrementalParser(Document document) {
+        this(document, new TagRegistry());
+    }
+
+    public IncrementalParser(Document document, TagRegistry registry) {
+        this.document = document;
+        this.registry = registry;
+        this.parser = new Parser(registry);
+        blocks.addAll(tokenize(getText(0, document.getLength()), 0));
+        document.addDocumentListener(this);
+    }
+
+    public void detach() {
+        document.removeDocumentListener(this);
+    }
+
+    public TestingSession buildTestingSession() {
+        EntryList entries = new EntryList(getText(0, document.getLength()), registry);
+        Timeline timeline = new Timeline();
+        int count = blocks.size();
+
+        for (int i = 0; i < count; i++) {
+            Block block = blocks.get(i);
+            //Leading text only counts as notes once a tag follows it
+            if (block.tag != -1 && (!block.leading || count > 1)) {
+                if (block.time != Parser.NO_TIME) {
+                    timeline.add(block.time, entries.size());
+                }
+                entries.add(block.tag, block.start + block.entryStart, block.start + block.entryEnd);
+            }
+        }
+
+        TestingSession session = new TestingSession();
+        session.setEntries(entries);
+        session.setTimeline(timeline);
+        return session;
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        retokenize(e.getOffset(), 0, e.getLength());
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        retokenize(e.getOffset(), e.getLength(), 0);
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+        //Attribute changes do not affect the text
+    }
+
+    /**
+     * Replaces the blocks around an edit. The block before the edit is
+     * included because inserting or removing a newline changes whether
+     * the next '@' starts a block.
+     */
+    private void retokenize(int offset, int removed, int inserted) {
+        int first = blockIndexAt(Math.max(offset - 1, 0));
+        int last = blockIndexAt(offset + removed);
+        int delta = inserted - removed;
+
+        int regionStart = blocks.get(first).start;
+        int regionEnd;
+        if (last == blocks.size() - 1) {
+            regionEnd = document.getLength();
+        } else {
+            //Stop before the newline that separates the region from the next block
+            regionEnd = blocks.get(last + 1).start + delta - 1;
+        }
+
+        List<Block> replacement = tokenize(getText(regionStart, regionEnd - regionStart), regionStart);
+        List<Block> replaced = blocks.subList(first, last + 1);
+        replaced.clear();
+        replaced.addAll(replacement);
+
+        for (int i = first + replacement.size(); i < blocks.size(); i++) {
+            blocks.get(i).start += delta;
+        }
+    }
+
+    private List<Block> tokenize(String text, int offset) {
+        List<Block> result = new ArrayList<Block>();
+        EntryList entries = new EntryList(text, registry);
+        int length = text.length();
+        int start = 0;
+
+        while (true) {
+            int boundary = text.indexOf("\n@", start);
+            int end = (boundary == -1) ? length : boundary;
+
+            Block block = new Block();
+            block.start = offset + start;
+            if (start < end && text.charAt(start) == '@') {
+                int parsed = entries.size();
+                parser.parseTaggedBlock(entries, text, start, end);
+                if (entries.size() > parsed) {
+                    block.tag = entries.getTag(parsed);
+                    block.entryStart = entries.getStart(parsed) - start;
+                    block.entryEnd = entries.getEnd(parsed) - start;
+                    if (block.tag == Parser.TIMESTAMP) {
+                        block.time = Parser.parseTime(entries.getText(parsed));
+                    }
+                }
+            } else if (start < end && block.start == 0) {
+                block.tag = Parser.NOTES;
+                block.entryEnd = end;
+                block.leading = true;
+            }
+            result.add(block);
+
+            if (boundary == -1) {
+                return result;
+            }
+            start = boundary + 1;
+        }
+    }
+
+    /**
+     * Binary search for the last block starting at or before position
+     */
+    private int blockIndexAt(int position) {
+        int low = 0;
+        int high = blocks.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blocks.get(mid).start <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private String getText(int offset, int length) {
+        try {
+            return document.getText(offset, length);
+        } catch (BadLocationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
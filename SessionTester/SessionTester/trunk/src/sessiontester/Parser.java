@@ -10,12 +10,21 @@
  */
 package sessiontester;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.text.ParseException;
 
 /**
- * Uses a regular expression to parse the input from the user interface
+ * Parses the input from the user interface in a single pass
  * and builds a TestingSession.
+ *
+ * The entry text is split into blocks at every line that starts with '@'.
+ * A block whose first line is a known tag (optionally followed by
+ * whitespace) becomes an entry holding the offsets of its remaining lines.
+ * Tags are looked up in a TagRegistry, which may add custom tags to TAGS.
+ * Any untagged text before the first tag is treated as notes.
+ *
+ * Every character is looked at a bounded number of times, so parsing runs
+ * in time linear in the length of the text whatever it contains. Keep it
+ * that way: ParserStressTest fails the build if it grows faster.
  */
 public class Parser {
 
@@ -29,67 +38,146 @@ public class Parser {
          "@task",
          "@timestamp",
      };
-    
-    public Parser() {
-    }
 
-    public Matcher match(String tag, String s) {
-        String regex = tag + "\\s*\n(?!@)(.*?)(?=\n@|\\z)";
-        Pattern p = Pattern.compile(regex, Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
-        return p.matcher(s);
+     //Tag ids, as used by EntryList, are indexes into TAGS
+     public static final int AREA = 0;
+     public static final int BUG = 1;
+     public static final int DATA = 2;
+     public static final int ENVIRONMENT = 3;
+     public static final int ISSUE = 4;
+     public static final int NOTES = 5;
+     public static final int TASK = 6;
+     public static final int TIMESTAMP = 7;
+
+     static final long NO_TIME = Long.MIN_VALUE;
+
+    private final TagRegistry registry;
+
+    public Parser() {
+        this(new TagRegistry());
     }
 
-    public Matcher matchLeadingText(String s) {
-        String regex = "^([^@].*?)\n@";
-        Pattern p = Pattern.compile(regex, Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
-        return p.matcher(s);
+    public Parser(TagRegistry registry) {
+        this.registry = registry;
     }
 
     public TestingSession parse(String testingSessionText) {
-        TestingSession session = new TestingSession();
-        Matcher m;
+        EntryList entries = new EntryList(testingSessionText, registry);
+        int length = testingSessionText.length();
+        int start = 0;
+
+        while (start < length) {
+            int boundary = testingSessionText.indexOf("\n@", start);
+            int end = (boundary == -1) ? length : boundary;
+
+            if (testingSessionText.charAt(start) == '@') {
+                parseTaggedBlock(entries, testingSessionText, start, end);
+            } else if (start == 0 && end > 0 && end < length) {
+                //Grab any leading text without a tag and add this as notes
+                entries.add(NOTES, 0, end);
+            }
 
-        //Grab any leading text without a tag and add this as notes
-        m = matchLeadingText(testingSessionText);
-        while (m.find()) {
-            session.addNotes(m.group(1));
+            if (boundary == -1) {
+                break;
+            }
+            start = boundary + 1;
         }
 
-        m = match("@notes", testingSessionText);
-        while (m.find()) {
-            session.addNotes(m.group(1));
+        Timeline timeline = new Timeline();
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.getTag(i) == TIMESTAMP) {
+                long time = parseTime(entries.getText(i));
+                if (time != NO_TIME) {
+                    timeline.add(time, i);
+                }
+            }
         }
 
-        m = match("@bug", testingSessionText);
-        while (m.find()) {
-            session.addBug(m.group(1));
+        TestingSession session = new TestingSession();
+        session.setEntries(entries);
+        session.setTimeline(timeline);
+        return session;
+    }
+
+    /**
+     * Returns the time of a @timestamp entry, or NO_TIME if it was edited
+     * into something that is not a date
+     */
+    static long parseTime(String timestamp) {
+        try {
+            return DateUtils.parseDateString(timestamp).getTime();
+        } catch (ParseException e) {
+            return NO_TIME;
         }
+    }
 
-        m = match("@task", testingSessionText);
-        while (m.find()) {
-            session.addTask(m.group(1));
+    /**
+     * Adds an entry for the block [start, end) whose first character is '@'.
+     * Blocks that do not start with a known tag are ignored.
+     */
+    void parseTaggedBlock(EntryList entries, String s, int start, int end) {
+        int tag = registry.match(s, start);
+        if (tag == -1) {
+            return;
         }
 
-        m = match("@issue", testingSessionText);
-        while (m.find()) {
-            session.addIssue(m.group(1));
+        int afterTag = start + registry.getTag(tag).length();
+        if (tag == TIMESTAMP) {
+            parseTimestamp(entries, s, afterTag, end);
+            return;
         }
 
-        m = match("@data", testingSessionText);
-        while (m.find()) {
-            session.addData(m.group(1));
+        int contentStart = findContentStart(s, afterTag, end);
+        if (contentStart != -1) {
+            entries.add(tag, contentStart, end);
         }
+    }
 
-        m = match("@environment", testingSessionText);
-        while (m.find()) {
-            session.addEnvironment(m.group(1));
+    /**
+     * The tag may be followed by whitespace; content starts after the last newline in it.
+     * Returns -1 if the tag line holds anything else, in which case the block is not a tag.
+     */
+    private int findContentStart(String s, int afterTag, int end) {
+        int contentStart = -1;
+        for (int i = afterTag; i < end && isWhitespace(s.charAt(i)); i++) {
+            if (s.charAt(i) == '\n') {
+                contentStart = i + 1;
+            }
         }
+        return contentStart;
+    }
 
-        m = match("@area", testingSessionText);
-        while (m.find()) {
-            session.addArea(m.group(1));
+    /**
+     * Records the date of a "@timestamp [date]" line, as inserted by the client.
+     * The entry spans the text between the brackets.
+     */
+    private void parseTimestamp(EntryList entries, String s, int afterTag, int end) {
+        int i = afterTag;
+        while (i < end && (s.charAt(i) == ' ' || s.charAt(i) == '\t')) {
+            i++;
+        }
+        if (i == end || s.charAt(i) != '[') {
+            return;
         }
 
-        return session;
+        int lineEnd = s.indexOf('\n', i);
+        if (lineEnd == -1 || lineEnd > end) {
+            lineEnd = end;
+        }
+        //Search back only as far as the bracket so a missing ']' costs one line, not the whole text
+        int close = lineEnd - 1;
+        while (close > i && s.charAt(close) != ']') {
+            close--;
+        }
+        if (close > i) {
+            entries.add(TIMESTAMP, i + 1, close);
+        }
+    }
+
+    /**
+     * Same character class as \s in java.util.regex
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 }
@@ -10,27 +10,32 @@
  */
 package sessiontester;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Result;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.xml.sax.SAXException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 /**
  * Saves and retrieves TestSessions through the file system
@@ -38,80 +43,627 @@ import org.xml.sax.SAXException;
  */
 public class Persistor {
 
-    @SuppressWarnings("static-access")
+    /**
+     * The session elements. The first HEADER_FIELDS are small and are all a
+     * listing needs; the binary format saves them first. XML keeps the
+     * layout it has always had, with Area last, so a header load reads the
+     * fields before AREA from the head of the file and Area from its tail.
+     */
+    static final String[] FIELDS = {
+        "Start", "End", "Duration", "Tester", "Mission", "Area", "Tasks", "Data", "Notes", "Issues", "Bugs", "Environment"
+    };
+    static final int HEADER_FIELDS = 6;
+    private static final int AREA = 5;
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+    private static final String ENCODING = "UTF-8";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HEADER_BUFFER_SIZE = 4 * 1024;
+    private static final int TAIL_SIZE = 4 * 1024;
+    private static final byte[] AREA_START = {'<', 'A', 'r', 'e', 'a'};
+    private static final byte[] SESSION_START = {'<', 'T', 'e', 's', 't', 'i', 'n', 'g', 'S', 'e', 's', 's', 'i', 'o', 'n', '>'};
+    private static final String TEMP_SUFFIX = ".tmp";
+    /**
+     * Session files whose names end with this are gzip compressed
+     */
+    public static final String COMPRESSED_SUFFIX = ".gz";
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        return factory;
+    }
+
+    /**
+     * Whether a save is forced to disk before it replaces the previous file.
+     * There is no batching mode: renaming an unsynced copy over the file
+     * lets a crash tear it, and SessionWriter already keeps frequent saves
+     * cheap by writing only the newest of a burst.
+     */
+    public enum SyncPolicy {
+
+        /**
+         * Every save, so a crash leaves either the previous copy or the new
+         * one, never a torn file
+         */
+        ALWAYS,
+        /**
+         * Left to the operating system. Only for archives that can be
+         * thrown away, as a crash can leave the file empty or torn.
+         */
+        NEVER
+    }
+
+    private static SyncPolicy syncPolicy = SyncPolicy.ALWAYS;
+
+    public static synchronized void setSyncPolicy(SyncPolicy policy) {
+        syncPolicy = policy;
+    }
+
+    public static synchronized SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    private static synchronized boolean shouldSync() {
+        return syncPolicy != SyncPolicy.NEVER;
+    }
+
+    /**
+     * The encodings save can write; load recognizes either
+     */
+    public enum Format {
+
+        /**
+         * Indented XML, readable by people and other tools
+         */
+        XML,
+        /**
+         * The compact BinarySessionFormat, for bulk storage
+         */
+        BINARY
+    }
+
+    private static Format defaultFormat = Format.XML;
+    //Sixteen million characters, a few thousand typical sessions
+    private static final SessionCache CACHE = new SessionCache(16L * 1024 * 1024);
+
+    /**
+     * The cache load reads sessions through
+     */
+    public static SessionCache getCache() {
+        return CACHE;
+    }
+
+    public static synchronized void setDefaultFormat(Format format) {
+        defaultFormat = format;
+    }
+
+    public static synchronized Format getDefaultFormat() {
+        return defaultFormat;
+    }
+
     public static File save(File file, TestingSession session) throws IOException {
+        return save(file, session, getDefaultFormat());
+    }
 
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder;
+    /**
+     * Saves the session to file without ever leaving it half written. The
+     * session is written to a temp file next to it, synced unless the
+     * sync policy is NEVER, then renamed over file. The file is compressed if
+     * its name ends with COMPRESSED_SUFFIX.
+     */
+    public static File save(File file, TestingSession session, Format format) throws IOException {
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        FileOutputStream stream = new FileOutputStream(temp);
+        CheckedOutputStream checked = new CheckedOutputStream(stream, new CRC32());
+        boolean written = false;
         try {
-            builder = factory.newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
-            throw new RuntimeException(e);
+            GZIPOutputStream gzip = isCompressed(file) ? new GZIPOutputStream(checked, BUFFER_SIZE) : null;
+            OutputStream out = (gzip != null) ? gzip : checked;
+            if (format == Format.BINARY) {
+                OutputStream buffered = new BufferedOutputStream(out, BUFFER_SIZE);
+                BinarySessionFormat.write(buffered, session);
+                buffered.flush();
+            } else {
+                write(out, session);
+            }
+            if (gzip != null) {
+                gzip.finish();
+            }
+            if (shouldSync()) {
+                stream.getFD().sync();
+            }
+            written = true;
+        } finally {
+            stream.close();
+            if (!written) {
+                temp.delete();
+            }
         }
-        Document doc = builder.newDocument();
-        Element root = (Element) doc.createElement("TestingSession");
-        doc.appendChild(root);
-
-        Persistor.addNode(doc, root, "Start", session.start);
-        Persistor.addNode(doc, root, "End", session.end);
-        Persistor.addNode(doc, root, "Duration", session.duration);
-        Persistor.addNode(doc, root, "Tester", session.tester);
-        Persistor.addNode(doc, root, "Mission", session.mission);
-        Persistor.addNode(doc, root, "Tasks", session.tasks);
-        Persistor.addNode(doc, root, "Data", session.data);
-        Persistor.addNode(doc, root, "Notes", session.notes);
-        Persistor.addNode(doc, root, "Issues", session.issues);
-        Persistor.addNode(doc, root, "Bugs", session.bugs);
-        Persistor.addNode(doc, root, "Environment", session.environment);
-        Persistor.addNode(doc, root, "Area", session.area);
+        FileUtils.replace(temp, file);
+        CACHE.invalidate(file);
+        int hash = (int) checked.getChecksum().getValue();
+        SessionCatalog.saved(file, session, file.length(), hash);
+        SearchIndex.saved(file, session, hash);
+
+        return file;
+    }
 
+    /**
+     * Streams the session as XML. The layout is the one the DOM serializer
+     * used to produce: one element per line, each followed by an escaped
+     * carriage return.
+     */
+    private static void write(OutputStream stream, TestingSession session) throws IOException {
         try {
-            Source source = new DOMSource(doc);
-            Result result = new StreamResult(file);
-            Transformer xformer = TransformerFactory.newInstance().newTransformer();
-            xformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            xformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-            xformer.transform(source, result);
-        } catch (TransformerConfigurationException e) {
-            throw new RuntimeException(e);
-        } catch (TransformerException e) {
+            Writer writer = Channels.newWriter(Channels.newChannel(stream), Charset.forName(ENCODING).newEncoder(), BUFFER_SIZE);
+            writer.write("<?xml version=\"1.0\" encoding=\"" + ENCODING + "\" standalone=\"no\"?>\n");
+
+            XMLStreamWriter xml = OUTPUT_FACTORY.createXMLStreamWriter(writer);
+            xml.writeStartElement("TestingSession");
+            xml.writeCharacters("\n");
+            writeElement(xml, "Start", null, session.getStart());
+            writeElement(xml, "End", null, session.getEnd());
+            writeElement(xml, "Duration", null, session.getDuration());
+            writeElement(xml, "Tester", null, session.getTester());
+            writeElement(xml, "Mission", null, session.getMission());
+            writeElement(xml, "Tasks", null, session.getTasks());
+            writeElement(xml, "Data", null, session.getData());
+            writeElement(xml, "Notes", null, session.getNotes());
+            writeElement(xml, "Issues", null, session.getIssues());
+            writeElement(xml, "Bugs", null, session.getBugs());
+            writeElement(xml, "Environment", null, session.getEnvironment());
+            if (session.getTimeline() != null) {
+                writeElement(xml, "Timeline", null, timelineText(session.getTimeline()));
+            }
+            for (String name : session.getExtensionNames()) {
+                writeElement(xml, "Extension", name, session.getExtension(name));
+            }
+            writeElement(xml, "Area", null, session.getArea());
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
+            xml.flush();
+            xml.close();
+            writer.flush();
+        } catch (XMLStreamException e) {
             throw new RuntimeException(e);
         }
+    }
 
-        return file;
+    private static void writeElement(XMLStreamWriter xml, String tagName, String name, String tagValue) throws XMLStreamException {
+        xml.writeCharacters("  ");
+        if (tagValue.length() == 0) {
+            xml.writeEmptyElement(tagName);
+            if (name != null) {
+                xml.writeAttribute("name", name);
+            }
+        } else {
+            xml.writeStartElement(tagName);
+            if (name != null) {
+                xml.writeAttribute("name", name);
+            }
+            writeText(xml, tagValue);
+            xml.writeEndElement();
+        }
+        xml.writeCharacters("\n  ");
+        xml.writeEntityRef("#13");
+        xml.writeCharacters("\n\n");
     }
 
-    private static void addNode(Document doc, Node parent, String tagName, String tagValue) {
-        Node nodeTag = doc.createElement(tagName);
-        Node nodeValue = doc.createTextNode(tagValue);
-        nodeTag.appendChild(nodeValue);
-        parent.appendChild(nodeTag);
-        parent.appendChild(doc.createTextNode("\r\n"));
+    /**
+     * Writes text with carriage returns as character references, since a
+     * parser normalizes literal ones away on load
+     */
+    private static void writeText(XMLStreamWriter xml, String text) throws XMLStreamException {
+        int start = 0;
+        int cr;
+        while ((cr = text.indexOf('\r', start)) != -1) {
+            xml.writeCharacters(text.substring(start, cr));
+            xml.writeEntityRef("#13");
+            start = cr + 1;
+        }
+        xml.writeCharacters(text.substring(start));
     }
 
-    public static TestingSession load(File file) throws IOException, ParserConfigurationException, SAXException, XPathExpressionException {
-        DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
-        domFactory.setNamespaceAware(true);
-        DocumentBuilder builder = domFactory.newDocumentBuilder();
-        Document doc = builder.parse(file);
+    /**
+     * Receives the sessions of an archive, in order
+     */
+    public interface Visitor {
 
-        XPathFactory factory = XPathFactory.newInstance();
-        XPath xpath = factory.newXPath();
+        /**
+         * Called on the thread that called loadAll. A packed session is
+         * passed the file it was packed from.
+         */
+        void visit(File file, TestingSession session) throws IOException;
+    }
 
-        TestingSession session = new TestingSession();
-        session.start = xpath.evaluate("//TestingSession/Start", doc);
-        session.end = xpath.evaluate("//TestingSession/End", doc);
-        session.duration = xpath.evaluate("//TestingSession/Duration", doc);
-        session.tester = xpath.evaluate("//TestingSession/Tester", doc);
-        session.mission = xpath.evaluate("//TestingSession/Mission", doc);
-        session.tasks = xpath.evaluate("//TestingSession/Tasks", doc);
-        session.data = xpath.evaluate("//TestingSession/Data", doc);
-        session.notes = xpath.evaluate("//TestingSession/Notes", doc);
-        session.issues = xpath.evaluate("//TestingSession/Issues", doc);
-        session.bugs = xpath.evaluate("//TestingSession/Bugs", doc);
-        session.area = xpath.evaluate("//TestingSession/Area", doc);
-        session.environment = xpath.evaluate("//TestingSession/Environment", doc);
+    public static void loadAll(File root, FileFilter filter, Visitor visitor) throws IOException {
+        loadAll(root, filter, Runtime.getRuntime().availableProcessors(), visitor);
+    }
+
+    /**
+     * Loads every session file and packed session under root that filter
+     * accepts, or all of them if filter is null, using the given number
+     * of threads. Sessions are handed to visitor one at a time in the
+     * order of the year/month/day tree, oldest first.
+     */
+    public static void loadAll(File root, FileFilter filter, int threads, Visitor visitor) throws IOException {
+        new ArchiveLoader(threads).loadAll(root, filter, visitor);
+    }
 
+    public static void sessionsBetween(File root, Date from, Date to, FileFilter filter, Visitor visitor) throws IOException {
+        sessionsBetween(root, from, to, filter, Runtime.getRuntime().availableProcessors(), visitor);
+    }
+
+    /**
+     * Loads the sessions under root started from from up to but not
+     * including to that filter accepts, or all of them if filter is null,
+     * and hands them to visitor in the order they started. Only the year,
+     * month and day directories that can hold such sessions are read.
+     */
+    public static void sessionsBetween(File root, Date from, Date to, FileFilter filter, int threads, Visitor visitor) throws IOException {
+        new ArchiveLoader(threads).loadBetween(root, from, to, filter, visitor);
+    }
+
+    /**
+     * Reads a session in one forward pass. Like the XPath queries this
+     * replaces, each field takes the text of the first matching element
+     * under a TestingSession element, and missing fields are empty.
+     * Sessions read recently come from the cache until their file changes.
+     */
+    public static TestingSession load(File file) throws IOException {
+        //A packed session changes only with its pack
+        File source = file.exists() ? file : new File(file.getParentFile(), SessionPack.FILE_NAME);
+        long modified = source.lastModified();
+        long length = source.length();
+        TestingSession session = CACHE.get(file, modified, length);
+        if (session == null) {
+            session = new TestingSession();
+            read(file, session, false);
+            CACHE.put(file, modified, length, session);
+        }
         return session;
     }
+
+    /**
+     * Reads only Start, End, Duration, Tester, Mission and Area, stopping
+     * as soon as they have been seen. The other fields are loaded from the
+     * file the first time one of them is used.
+     */
+    public static TestingSession loadHeader(File file) throws IOException {
+        TestingSession session = new TestingSession();
+        read(file, session, true);
+        session.setBodyFile(file);
+        return session;
+    }
+
+    /**
+     * Fills the fields after the header into session
+     */
+    static void loadBody(File file, TestingSession session) throws IOException {
+        TestingSession loaded = load(file);
+        session.setTasks(loaded.getTasks());
+        session.setData(loaded.getData());
+        session.setNotes(loaded.getNotes());
+        session.setIssues(loaded.getIssues());
+        session.setBugs(loaded.getBugs());
+        session.setEnvironment(loaded.getEnvironment());
+        for (String name : loaded.getExtensionNames()) {
+            session.setExtension(name, loaded.getExtension(name));
+        }
+        session.setTimeline(loaded.getTimeline());
+    }
+
+    public static boolean isCompressed(File file) {
+        return file.getName().endsWith(COMPRESSED_SUFFIX);
+    }
+
+    /**
+     * Replaces a session file with a compressed copy named file plus
+     * COMPRESSED_SUFFIX, keeping its modification time, and returns the
+     * copy. The bytes are copied as they are, so either format survives.
+     */
+    public static File compress(File file) throws IOException {
+        File compressed = new File(file.getPath() + COMPRESSED_SUFFIX);
+        File temp = new File(compressed.getPath() + TEMP_SUFFIX);
+        long modified = file.lastModified();
+
+        FileOutputStream stream = new FileOutputStream(temp);
+        boolean written = false;
+        try {
+            GZIPOutputStream gzip = new GZIPOutputStream(stream, BUFFER_SIZE);
+            InputStream in = new FileInputStream(file);
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    gzip.write(buffer, 0, count);
+                }
+            } finally {
+                in.close();
+            }
+            gzip.finish();
+            //Always, as the original is deleted once the copy replaces it
+            stream.getFD().sync();
+            written = true;
+        } finally {
+            stream.close();
+            if (!written) {
+                temp.delete();
+            }
+        }
+        FileUtils.replace(temp, compressed);
+        compressed.setLastModified(modified);
+        if (!file.delete()) {
+            throw new IOException("Could not delete " + file + " after compressing it");
+        }
+        SessionCatalog.changed(file.getAbsoluteFile().getParentFile());
+        return compressed;
+    }
+
+    /**
+     * Reads file in whichever format it was saved in, told apart by its
+     * first bytes, decompressing it first if its name says so. A file
+     * that has been moved into the SessionPack of its directory is read
+     * from there.
+     */
+    private static void read(File file, TestingSession session, boolean headerOnly) throws IOException {
+        read(file, session, headerOnly, true);
+    }
+
+    private static void read(File file, TestingSession session, boolean headerOnly, boolean areaFromTail) throws IOException {
+        if (!file.exists() && file.getParentFile() != null) {
+            File packFile = new File(file.getParentFile(), SessionPack.FILE_NAME);
+            if (packFile.isFile()) {
+                SessionPack pack = SessionPack.open(packFile);
+                if (pack.contains(file.getName())) {
+                    pack.read(file.getName(), session, headerOnly);
+                    return;
+                }
+            }
+        }
+        int bufferSize = headerOnly ? HEADER_BUFFER_SIZE : BUFFER_SIZE;
+        boolean compressed = isCompressed(file);
+        areaFromTail = areaFromTail && headerOnly && !compressed;
+        InputStream stream = new FileInputStream(file);
+        try {
+            if (compressed) {
+                stream = new GZIPInputStream(stream, bufferSize);
+            }
+            stream = new BufferedInputStream(stream, bufferSize);
+            byte[] head = new byte[BinarySessionFormat.MAGIC.length];
+            stream.mark(head.length);
+            int length = 0;
+            int count;
+            while (length < head.length && (count = stream.read(head, length, head.length - length)) != -1) {
+                length += count;
+            }
+            stream.reset();
+            if (BinarySessionFormat.isBinary(head, length)) {
+                BinarySessionFormat.read(stream, session, headerOnly);
+                return;
+            }
+
+            XMLStreamReader xml = INPUT_FACTORY.createXMLStreamReader(stream);
+            boolean[] loaded;
+            try {
+                loaded = read(xml, session, headerOnly, areaFromTail ? AREA : HEADER_FIELDS);
+            } finally {
+                xml.close();
+            }
+            if (areaFromTail && !loaded[AREA] && !readAreaFromTail(file, session)) {
+                //Not saved by us, or an Area too long for the tail
+                read(file, session, true, false);
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not read " + file + ": " + e.getMessage(), e);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Reads the fields of the session element. A header-only read takes
+     * just the header fields and stops once the first headerFields of them
+     * are loaded. Returns which fields were loaded.
+     */
+    private static boolean[] read(XMLStreamReader xml, TestingSession session, boolean headerOnly, int headerFields) throws XMLStreamException {
+        boolean[] loaded = new boolean[FIELDS.length];
+        int depth = 0;
+        int sessionDepth = -1;
+
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                String name = xml.getLocalName();
+                if (sessionDepth != -1 && depth == sessionDepth + 1) {
+                    int field = indexOf(FIELDS, name);
+                    boolean wanted = headerOnly ? (field != -1 && field < HEADER_FIELDS) : (field != -1 || name.equals("Extension") || name.equals("Timeline"));
+                    if (!wanted) {
+                        readText(xml, null);
+                    } else if (name.equals("Timeline")) {
+                        session.setTimeline(parseTimeline(readText(xml, new StringBuilder())));
+                    } else if (field == -1) {
+                        String extension = xml.getAttributeValue(null, "name");
+                        session.setExtension(extension == null ? "" : extension, readText(xml, new StringBuilder()));
+                    } else {
+                        String text = readText(xml, new StringBuilder());
+                        if (!loaded[field]) {
+                            setField(session, field, text);
+                            loaded[field] = true;
+                        }
+                    }
+                    depth--;
+                    if (headerOnly && allLoaded(loaded, headerFields)) {
+                        return loaded;
+                    }
+                } else if (sessionDepth == -1 && name.equals("TestingSession")) {
+                    sessionDepth = depth;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == sessionDepth) {
+                    sessionDepth = -1;
+                }
+                depth--;
+            }
+        }
+        return loaded;
+    }
+
+    private static boolean allLoaded(boolean[] loaded, int count) {
+        for (int i = 0; i < count; i++) {
+            if (!loaded[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads Area from the end of an XML session file, where save puts it.
+     * Returns false if the last TAIL_SIZE bytes do not hold a whole Area
+     * element that closes the session.
+     */
+    private static boolean readAreaFromTail(File file, TestingSession session) throws IOException {
+        byte[] tail;
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            long length = in.length();
+            tail = new byte[(int) Math.min(length, TAIL_SIZE)];
+            in.seek(length - tail.length);
+            in.readFully(tail);
+        } finally {
+            in.close();
+        }
+
+        int start = lastIndexOf(tail, AREA_START);
+        if (start == -1) {
+            return false;
+        }
+        InputStream fragment = new SequenceInputStream(new ByteArrayInputStream(SESSION_START),
+                new ByteArrayInputStream(tail, start, tail.length - start));
+        try {
+            XMLStreamReader xml = INPUT_FACTORY.createXMLStreamReader(fragment, ENCODING);
+            try {
+                TestingSession area = new TestingSession();
+                //Reading to the end checks that Area was a child of the session
+                boolean[] loaded = read(xml, area, false, HEADER_FIELDS);
+                if (!loaded[AREA]) {
+                    return false;
+                }
+                session.setArea(area.getArea());
+                return true;
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException e) {
+            return false;
+        }
+    }
+
+    private static int lastIndexOf(byte[] bytes, byte[] target) {
+        for (int i = bytes.length - target.length; i >= 0; i--) {
+            int j = 0;
+            while (j < target.length && bytes[i + j] == target[j]) {
+                j++;
+            }
+            if (j == target.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads all the text up to the end of the current element into text,
+     * or skips it if text is null
+     */
+    private static String readText(XMLStreamReader xml, StringBuilder text) throws XMLStreamException {
+        int level = 1;
+        while (level > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                level++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                level--;
+            } else if (text != null && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE)) {
+                text.append(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+            }
+        }
+        return (text == null) ? null : text.toString();
+    }
+
+    /**
+     * One marker per line: its epoch millis and its entry index
+     */
+    private static String timelineText(Timeline timeline) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < timeline.size(); i++) {
+            text.append(timeline.getMillis(i)).append(' ').append(timeline.getEntryIndex(i)).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static Timeline parseTimeline(String text) throws XMLStreamException {
+        Timeline timeline = new Timeline();
+        for (String line : text.split("\n")) {
+            line = line.trim();
+            if (line.length() == 0) {
+                continue;
+            }
+            int space = line.indexOf(' ');
+            try {
+                timeline.add(Long.parseLong(line.substring(0, space)), Integer.parseInt(line.substring(space + 1).trim()));
+            } catch (RuntimeException e) {
+                throw new XMLStreamException("Malformed timeline marker: " + line);
+            }
+        }
+        return timeline;
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static String getField(TestingSession session, int field) {
+        switch (field) {
+            case 0: return session.getStart();
+            case 1: return session.getEnd();
+            case 2: return session.getDuration();
+            case 3: return session.getTester();
+            case 4: return session.getMission();
+            case 5: return session.getArea();
+            case 6: return session.getTasks();
+            case 7: return session.getData();
+            case 8: return session.getNotes();
+            case 9: return session.getIssues();
+            case 10: return session.getBugs();
+            case 11: return session.getEnvironment();
+            default: throw new IllegalArgumentException("No field " + field);
+        }
+    }
+
+    static void setField(TestingSession session, int field, String value) {
+        switch (field) {
+            case 0: session.setStart(value); break;
+            case 1: session.setEnd(value); break;
+            case 2: session.setDuration(value); break;
+            case 3: session.setTester(value); break;
+            case 4: session.setMission(value); break;
+            case 5: session.setArea(value); break;
+            case 6: session.setTasks(value); break;
+            case 7: session.setData(value); break;
+            case 8: session.setNotes(value); break;
+            case 9: session.setIssues(value); break;
+            case 10: session.setBugs(value); break;
+            case 11: session.setEnvironment(value); break;
+        }
+    }
 }
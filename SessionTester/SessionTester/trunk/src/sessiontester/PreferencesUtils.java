@@ -65,6 +65,10 @@ public class PreferencesUtils
         SetTesterName(strDefTesterName);
         SetWebReportPath(strDefWebReportPath);
         SetSessionFilePath(strDefSessionFilePath);
+        SetCustomTags(strDefCustomTags);
+        SetAutosaveInterval(intDefAutosaveInterval);
+        SetCompressAfterDays(intDefCompressAfterDays);
+        SetPackSessions(boolDefPackSessions);
     }
 
     /**
@@ -129,6 +133,10 @@ public class PreferencesUtils
             prefs.remove(prefTesterName);
             prefs.remove(prefWebReportPath);
             prefs.remove(prefSessionFilePath);
+            prefs.remove(prefCustomTags);
+            prefs.remove(prefAutosaveInterval);
+            prefs.remove(prefCompressAfterDays);
+            prefs.remove(prefPackSessions);
         }
         catch(NullPointerException e)
         {
@@ -225,6 +233,103 @@ public class PreferencesUtils
         }
     }
 
+    /**
+     * Sets the custom tags in the preferences object.
+     * @param strCustomTags as whitespace or comma separated tags,
+     * eg. "@risk @question @perf".
+     */
+    public void SetCustomTags(String strCustomTags)
+    {
+        try
+        {
+            prefs.put(prefCustomTags, strCustomTags);
+        }
+        catch(IllegalArgumentException e)
+        {
+            logger.log(Level.SEVERE,
+                    "Illegal Argument Exception:\n", e);
+        }
+        catch(IllegalStateException e)
+        {
+            logger.log(Level.SEVERE,
+                    "Illegal State Exception:\n", e);
+        }
+        catch(NullPointerException e)
+        {
+            logger.log(Level.SEVERE,
+                    "Null Pointer Exception:\n", e);
+        }
+    }
+
+    /**
+     * Sets the autosave interval in the preferences object.
+     * @param intAutosaveInterval as seconds between automatic saves while
+     * the tester keeps typing, 0 to turn autosave off.
+     */
+    public void SetAutosaveInterval(int intAutosaveInterval)
+    {
+        try
+        {
+            prefs.putInt(prefAutosaveInterval, intAutosaveInterval);
+        }
+        catch(IllegalStateException e)
+        {
+            logger.log(Level.SEVERE,
+                    "Illegal State Exception:\n", e);
+        }
+        catch(NullPointerException e)
+        {
+            logger.log(Level.SEVERE,
+                    "Null Pointer Exception:\n", e);
+        }
+    }
+
+    /**
+     * Sets the age at which saved sessions are compressed.
+     * @param intCompressAfterDays as days since a session file was last
+     * written, 0 to never compress sessions.
+     */
+    public void SetCompressAfterDays(int intCompressAfterDays)
+    {
+        try
+        {
+            prefs.putInt(prefCompressAfterDays, intCompressAfterDays);
+        }
+        catch(IllegalStateException e)
+        {
+            logger.log(Level.SEVERE,
+                    "Illegal State Exception:\n", e);
+        }
+        catch(NullPointerException e)
+        {
+            logger.log(Level.SEVERE,
+                    "Null Pointer Exception:\n", e);
+        }
+    }
+
+    /**
+     * Sets whether old sessions are packed rather than compressed.
+     * @param boolPackSessions as true to move sessions older than
+     * CompressAfterDays into one pack file per day.
+     */
+    public void SetPackSessions(boolean boolPackSessions)
+    {
+        try
+        {
+            prefs.putBoolean(prefPackSessions, boolPackSessions);
+        }
+        catch(IllegalStateException e)
+        {
+            logger.log(Level.SEVERE,
+                    "Illegal State Exception:\n", e);
+        }
+        catch(NullPointerException e)
+        {
+            logger.log(Level.SEVERE,
+                    "Null Pointer Exception:\n", e);
+        }
+    }
+
     /**
      * Get the value for SessionFilePath in the preferences.
      * @return prefSessionFilePath
@@ -302,6 +407,109 @@ public class PreferencesUtils
         return strWebReportPath;
     }
 
+    /**
+     * Get the value for CustomTags in the preferences.
+     * @return prefCustomTags
+     */
+    public String GetCustomTags()
+    {
+        String strCustomTags = null;
+
+        try
+        {
+            strCustomTags = prefs.get(prefCustomTags, strDefCustomTags);
+        }
+        catch(IllegalStateException e)
+        {
+            logger.log(Level.SEVERE,
+                    "Illegal State Exception:\n", e);
+        }
+        catch(NullPointerException e)
+        {
+            logger.log(Level.SEVERE,
+                    "Null Pointer Exception:\n", e);
+        }
+        return strCustomTags;
+    }
+
+    /**
+     * Get the value for AutosaveInterval in the preferences.
+     * @return prefAutosaveInterval
+     */
+    public int GetAutosaveInterval()
+    {
+        int intAutosaveInterval = intDefAutosaveInterval;
+
+        try
+        {
+            intAutosaveInterval = prefs.getInt(prefAutosaveInterval,
+                    intDefAutosaveInterval);
+        }
+        catch(IllegalStateException e)
+        {
+            logger.log(Level.SEVERE,
+                    "Illegal State Exception:\n", e);
+        }
+        catch(NullPointerException e)
+        {
+            logger.log(Level.SEVERE,
+                    "Null Pointer Exception:\n", e);
+        }
+        return intAutosaveInterval;
+    }
+
+    /**
+     * Get the value for CompressAfterDays in the preferences.
+     * @return prefCompressAfterDays
+     */
+    public int GetCompressAfterDays()
+    {
+        int intCompressAfterDays = intDefCompressAfterDays;
+
+        try
+        {
+            intCompressAfterDays = prefs.getInt(prefCompressAfterDays,
+                    intDefCompressAfterDays);
+        }
+        catch(IllegalStateException e)
+        {
+            logger.log(Level.SEVERE,
+                    "Illegal State Exception:\n", e);
+        }
+        catch(NullPointerException e)
+        {
+            logger.log(Level.SEVERE,
+                    "Null Pointer Exception:\n", e);
+        }
+        return intCompressAfterDays;
+    }
+
+    /**
+     * Get the value for PackSessions in the preferences.
+     * @return prefPackSessions
+     */
+    public boolean GetPackSessions()
+    {
+        boolean boolPackSessions = boolDefPackSessions;
+
+        try
+        {
+            boolPackSessions = prefs.getBoolean(prefPackSessions,
+                    boolDefPackSessions);
+        }
+        catch(IllegalStateException e)
+        {
+            logger.log(Level.SEVERE,
+                    "Illegal State Exception:\n", e);
+        }
+        catch(NullPointerException e)
+        {
+            logger.log(Level.SEVERE,
+                    "Null Pointer Exception:\n", e);
+        }
+        return boolPackSessions;
+    }
+
     /**
      * Import preferences from an xml-file.
      */
@@ -377,6 +585,10 @@ public class PreferencesUtils
         strDefWebReportPath = "";
         strDefSessionFilePath = FileUtils.HOME_DIR.getAbsolutePath() + 
                 "\\.sessiontester";
+        strDefCustomTags = "";
+        intDefAutosaveInterval = 60;
+        intDefCompressAfterDays = 0;
+        boolDefPackSessions = false;
     }
 
     private Preferences prefs;
@@ -396,6 +608,10 @@ public class PreferencesUtils
             "ST_SESSION_END_WARNING_ACTIVATED";
     private static String   prefSessionEndWarning = "ST_SESSION_END_WARNING";
     private static String   prefPrimerFile = "ST_PRIMER_FILE";
+    private static String   prefCustomTags = "ST_CUSTOM_TAGS";
+    private static String   prefAutosaveInterval = "ST_AUTOSAVE_INTERVAL";
+    private static String   prefCompressAfterDays = "ST_COMPRESS_AFTER_DAYS";
+    private static String   prefPackSessions = "ST_PACK_SESSIONS";
 
     // Default values for preference data
     private static String   strDefTesterName;
@@ -408,5 +624,9 @@ public class PreferencesUtils
     private static boolean  boolDefSessionEndWarningActivated;
     private static int      intDefSessionEndWarning;
     private static String   strDefPrimerFile;
+    private static String   strDefCustomTags;
+    private static int      intDefAutosaveInterval;
+    private static int      intDefCompressAfterDays;
+    private static boolean  boolDefPackSessions;
 }
 
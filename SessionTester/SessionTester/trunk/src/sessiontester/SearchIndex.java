@@ -0,0 +1,793 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A full-text index over the tasks, data, notes, issues and bugs of the
+ * sessions in a SessionCatalog, kept in a file next to the catalog.
+ *
+ * Text is split into lower case runs of letters and digits. Each term
+ * maps to a postings list of the sessions containing it and the word
+ * positions in each, delta and varint encoded. A query is a list of
+ * words, all of which must match; a word ending in '*' matches any term
+ * starting with it, and words in double quotes must appear in sequence.
+ *
+ * The index follows the catalog: sessions whose path or CRC32 changed
+ * are indexed again before the next search, and Persistor.save updates
+ * open indexes directly.
+ */
+public class SearchIndex {
+
+    public static final String FILE_NAME = "search.idx";
+    private static final int MAGIC = 0x53545849; //"STXI"
+    private static final int VERSION = 1;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAX_TOKEN_LENGTH = 64;
+    //Keeps phrases from matching across the end of one field and the start of the next
+    private static final int FIELD_GAP = 16;
+    //Past this many stale sessions, they are reloaded in parallel
+    private static final int DIRECT_LOAD_LIMIT = 64;
+    private static final Map<File, SearchIndex> OPEN = new HashMap<File, SearchIndex>();
+    private static Logger logger = Logger.getLogger(SearchIndex.class.getName());
+
+    private static final Comparator<SessionCatalog.Entry> NEWEST_FIRST = new Comparator<SessionCatalog.Entry>() {
+
+        @Override
+        public int compare(SessionCatalog.Entry a, SessionCatalog.Entry b) {
+            if (a.getTime() != b.getTime()) {
+                return (a.getTime() > b.getTime()) ? -1 : 1;
+            }
+            return a.getPath().compareTo(b.getPath());
+        }
+    };
+
+    /**
+     * A growable list of ints
+     */
+    private static class Ints {
+
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                int[] grown = new int[size * 2];
+                System.arraycopy(values, 0, grown, 0, size);
+                values = grown;
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            int[] result = new int[size];
+            System.arraycopy(values, 0, result, 0, size);
+            return result;
+        }
+    }
+
+    /**
+     * The sessions containing a term, in increasing order of id. Each is
+     * the varint delta from the previous id, the number of positions, the
+     * size in bytes of the positions, then the position deltas.
+     */
+    private static class Postings {
+
+        byte[] bytes = new byte[16];
+        int length;
+        int lastDoc = -1;
+        int docs;
+
+        void add(int doc, Ints positions) {
+            int positionBytes = 0;
+            int previous = 0;
+            for (int i = 0; i < positions.size; i++) {
+                positionBytes += varintSize(positions.values[i] - previous);
+                previous = positions.values[i];
+            }
+            ensure(15 + positionBytes);
+            writeVarint(doc - lastDoc);
+            writeVarint(positions.size);
+            writeVarint(positionBytes);
+            previous = 0;
+            for (int i = 0; i < positions.size; i++) {
+                writeVarint(positions.values[i] - previous);
+                previous = positions.values[i];
+            }
+            lastDoc = doc;
+            docs++;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                byte[] grown = new byte[Math.max(bytes.length * 2, length + extra)];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7f) != 0) {
+                bytes[length++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        private static int varintSize(int value) {
+            int size = 1;
+            while ((value & ~0x7f) != 0) {
+                size++;
+                value >>>= 7;
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Walks a postings list
+     */
+    private static class Reader {
+
+        private final byte[] bytes;
+        private final int length;
+        private int offset;
+        private int positionsOffset;
+        int doc = -1;
+        int freq;
+
+        Reader(Postings postings) {
+            this.bytes = postings.bytes;
+            this.length = postings.length;
+        }
+
+        boolean next() {
+            if (offset >= length) {
+                return false;
+            }
+            doc += readVarint();
+            freq = readVarint();
+            int positionBytes = readVarint();
+            positionsOffset = offset;
+            offset += positionBytes;
+            return true;
+        }
+
+        /**
+         * Moves to the first session at or after target
+         */
+        boolean advance(int target) {
+            while (doc < target) {
+                if (!next()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int[] positions() {
+            int saved = offset;
+            offset = positionsOffset;
+            int[] result = new int[freq];
+            int position = 0;
+            for (int i = 0; i < freq; i++) {
+                position += readVarint();
+                result[i] = position;
+            }
+            offset = saved;
+            return result;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[offset++];
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    private final File root;
+    private final File indexFile;
+    private final SessionCatalog catalog;
+    private TreeMap<String, Postings> terms = new TreeMap<String, Postings>();
+    //Session id to path, null once the session was removed or indexed again
+    private List<String> paths = new ArrayList<String>();
+    private Ints hashes = new Ints();
+    private final Map<String, Integer> docs = new HashMap<String, Integer>();
+    private int removed;
+    private long catalogVersion = -1;
+    private boolean changed;
+    //Held while updating, so two updates do not read the same sessions
+    private final Object updateLock = new Object();
+
+    private SearchIndex(SessionCatalog catalog) {
+        this.catalog = catalog;
+        this.root = catalog.getRoot();
+        this.indexFile = new File(root, FILE_NAME);
+    }
+
+    /**
+     * Returns the index of the sessions under root, reading it from disk
+     * and bringing it up to date the first time. That can mean reading
+     * every session, so it happens without holding up saves meanwhile;
+     * the catalog tells the index about them on its next update.
+     */
+    public static SearchIndex open(File root) throws IOException {
+        File key = root.getAbsoluteFile();
+        synchronized (OPEN) {
+            SearchIndex index = OPEN.get(key);
+            if (index != null) {
+                return index;
+            }
+        }
+
+        SearchIndex index = new SearchIndex(SessionCatalog.open(key));
+        index.load();
+        synchronized (OPEN) {
+            //Another thread may have opened it meanwhile
+            if (!OPEN.containsKey(key)) {
+                OPEN.put(key, index);
+            }
+            return OPEN.get(key);
+        }
+    }
+
+    /**
+     * Writes every open index that has changed
+     */
+    public static void flushAll() throws IOException {
+        for (SearchIndex index : openIndexes()) {
+            index.flush();
+        }
+    }
+
+    /**
+     * Writes the index of root if it is open and stops keeping it up to
+     * date
+     */
+    public static void close(File root) throws IOException {
+        SearchIndex index;
+        synchronized (OPEN) {
+            index = OPEN.remove(root.getAbsoluteFile());
+        }
+        if (index != null) {
+            index.flush();
+        }
+    }
+
+    /**
+     * Called by Persistor.save with the CRC32 of what it wrote
+     */
+    static void saved(File file, TestingSession session, int hash) {
+        for (SearchIndex index : openIndexes()) {
+            String path = SessionCatalog.relativePath(index.root, file);
+            if (path != null) {
+                index.replace(path, session, hash);
+            }
+        }
+    }
+
+    /**
+     * Indexes the sessions the catalogs of the open indexes changed
+     */
+    static void updateAll() throws IOException {
+        for (SearchIndex index : openIndexes()) {
+            index.update();
+        }
+    }
+
+    private static List<SearchIndex> openIndexes() {
+        synchronized (OPEN) {
+            return new ArrayList<SearchIndex>(OPEN.values());
+        }
+    }
+
+    /**
+     * The number of sessions indexed
+     */
+    public int size() throws IOException {
+        update();
+        synchronized (this) {
+            return docs.size();
+        }
+    }
+
+    /**
+     * Returns up to limit sessions matching query, newest first
+     */
+    public List<SessionCatalog.Entry> search(String query, int limit) throws IOException {
+        update();
+        List<String> matches = find(query);
+
+        //Looked up without the index lock, as the catalog may rescan the disk.
+        //Keeps the newest limit matches, the oldest of them at the head.
+        PriorityQueue<SessionCatalog.Entry> newest = new PriorityQueue<SessionCatalog.Entry>(Math.max(1, Math.min(limit, matches.size())),
+                Collections.reverseOrder(NEWEST_FIRST));
+        for (String path : matches) {
+            SessionCatalog.Entry entry = catalog.get(path);
+            if (entry != null) {
+                newest.add(entry);
+                if (newest.size() > limit) {
+                    newest.poll();
+                }
+            }
+        }
+        List<SessionCatalog.Entry> result = new ArrayList<SessionCatalog.Entry>(newest);
+        Collections.sort(result, NEWEST_FIRST);
+        return result;
+    }
+
+    /**
+     * The paths of the sessions matching query
+     */
+    private synchronized List<String> find(String query) {
+        int[] matches = null;
+        for (List<String> clause : parse(query)) {
+            int[] clauseMatches = match(clause);
+            matches = (matches == null) ? clauseMatches : intersect(matches, clauseMatches);
+            if (matches.length == 0) {
+                break;
+            }
+        }
+        List<String> result = new ArrayList<String>();
+        if (matches != null) {
+            for (int doc : matches) {
+                if (paths.get(doc) != null) {
+                    result.add(paths.get(doc));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the index if it changed since it was last written
+     */
+    public synchronized void flush() throws IOException {
+        if (changed) {
+            write();
+            changed = false;
+        }
+    }
+
+    /**
+     * Splits a query into clauses. A clause of one term matches it, or
+     * with a trailing '*' any term it starts; a longer one is a phrase.
+     */
+    static List<List<String>> parse(String query) {
+        List<List<String>> clauses = new ArrayList<List<String>>();
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int end;
+            String text;
+            if (c == '"') {
+                end = query.indexOf('"', i + 1);
+                if (end == -1) {
+                    end = query.length();
+                }
+                text = query.substring(i + 1, end);
+                end++;
+            } else {
+                end = i;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end))) {
+                    end++;
+                }
+                text = query.substring(i, end);
+            }
+            List<String> clause = tokens(text);
+            if (clause.size() == 1 && c != '"' && text.endsWith("*")) {
+                clause.set(0, clause.get(0) + "*");
+            }
+            if (!clause.isEmpty()) {
+                clauses.add(clause);
+            }
+            i = end;
+        }
+        return clauses;
+    }
+
+    static List<String> tokens(String text) {
+        List<String> result = new ArrayList<String>();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i > start && i - start <= MAX_TOKEN_LENGTH) {
+                result.add(text.substring(start, i).toLowerCase(Locale.ENGLISH));
+            }
+        }
+        return result;
+    }
+
+    private int[] match(List<String> clause) {
+        String first = clause.get(0);
+        if (clause.size() == 1) {
+            if (first.endsWith("*")) {
+                return matchPrefix(first.substring(0, first.length() - 1));
+            }
+            Postings postings = terms.get(first);
+            return (postings != null) ? docs(postings) : new int[0];
+        }
+
+        //All the terms of the phrase, then their positions in each candidate
+        Postings[] lists = new Postings[clause.size()];
+        int[] candidates = null;
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = terms.get(clause.get(i));
+            if (lists[i] == null) {
+                return new int[0];
+            }
+            candidates = (candidates == null) ? docs(lists[i]) : intersect(candidates, docs(lists[i]));
+        }
+
+        Reader[] readers = new Reader[lists.length];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Reader(lists[i]);
+        }
+        Ints result = new Ints();
+        for (int doc : candidates) {
+            readers[0].advance(doc);
+            int[] starts = readers[0].positions();
+            int count = starts.length;
+            for (int i = 1; i < readers.length && count > 0; i++) {
+                readers[i].advance(doc);
+                int[] positions = readers[i].positions();
+                int kept = 0;
+                for (int j = 0; j < count; j++) {
+                    if (Arrays.binarySearch(positions, starts[j] + i) >= 0) {
+                        starts[kept++] = starts[j];
+                    }
+                }
+                count = kept;
+            }
+            if (count > 0) {
+                result.add(doc);
+            }
+        }
+        return result.toArray();
+    }
+
+    private int[] matchPrefix(String prefix) {
+        Set<Integer> matches = new HashSet<Integer>();
+        for (Postings postings : terms.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+            for (int doc : docs(postings)) {
+                matches.add(doc);
+            }
+        }
+        int[] result = new int[matches.size()];
+        int i = 0;
+        for (int doc : matches) {
+            result[i++] = doc;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * The live sessions in a postings list
+     */
+    private int[] docs(Postings postings) {
+        Ints result = new Ints();
+        Reader reader = new Reader(postings);
+        while (reader.next()) {
+            if (paths.get(reader.doc) != null) {
+                result.add(reader.doc);
+            }
+        }
+        return result.toArray();
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        Ints result = new Ints();
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result.add(a[i]);
+                i++;
+                j++;
+            }
+        }
+        return result.toArray();
+    }
+
+    private void load() throws IOException {
+        if (indexFile.exists()) {
+            try {
+                read();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Rebuilding unreadable search index " + indexFile, e);
+                clear();
+            }
+        }
+        update();
+        flush();
+    }
+
+    private void clear() {
+        terms = new TreeMap<String, Postings>();
+        paths = new ArrayList<String>();
+        hashes = new Ints();
+        docs.clear();
+        removed = 0;
+    }
+
+    /**
+     * Indexes the sessions the catalog added or changed since the last
+     * update and drops the ones it no longer has. The sessions are read
+     * without holding the index, so saves and searches carry on; a save
+     * that overtakes the reading of its session is indexed again on the
+     * next update, as its hash no longer matches the catalog.
+     */
+    private void update() throws IOException {
+        synchronized (updateLock) {
+            long version = catalog.getVersion();
+            synchronized (this) {
+                if (version == catalogVersion) {
+                    return;
+                }
+            }
+            List<SessionCatalog.Entry> entries = catalog.all();
+            final Map<String, SessionCatalog.Entry> stale = new HashMap<String, SessionCatalog.Entry>();
+            synchronized (this) {
+                Set<String> current = new HashSet<String>();
+                for (SessionCatalog.Entry entry : entries) {
+                    current.add(entry.getPath());
+                    Integer doc = docs.get(entry.getPath());
+                    if (doc == null || hashes.values[doc] != entry.getHash()) {
+                        stale.put(entry.getPath(), entry);
+                    }
+                }
+                for (String path : new ArrayList<String>(docs.keySet())) {
+                    if (!current.contains(path)) {
+                        remove(path);
+                    }
+                }
+            }
+
+            if (stale.size() <= DIRECT_LOAD_LIMIT) {
+                for (SessionCatalog.Entry entry : stale.values()) {
+                    try {
+                        replace(entry.getPath(), Persistor.load(entry.getFile()), entry.getHash());
+                    } catch (IOException e) {
+                        logger.log(Level.WARNING, "Could not index " + entry.getFile(), e);
+                    }
+                }
+            } else {
+                Persistor.loadAll(root, new FileFilter() {
+
+                    @Override
+                    public boolean accept(File file) {
+                        return stale.containsKey(SessionCatalog.relativePath(root, file));
+                    }
+                }, new Persistor.Visitor() {
+
+                    @Override
+                    public void visit(File file, TestingSession session) {
+                        String path = SessionCatalog.relativePath(root, file);
+                        replace(path, session, stale.get(path).getHash());
+                    }
+                });
+            }
+            synchronized (this) {
+                catalogVersion = version;
+                if (removed > docs.size()) {
+                    compact();
+                }
+            }
+        }
+    }
+
+    private synchronized void replace(String path, TestingSession session, int hash) {
+        remove(path);
+        int doc = paths.size();
+        paths.add(path);
+        hashes.add(hash);
+        docs.put(path, doc);
+
+        Map<String, Ints> positions = new HashMap<String, Ints>();
+        int position = 0;
+        String[] fields = {session.getTasks(), session.getData(), session.getNotes(), session.getIssues(), session.getBugs()};
+        for (String field : fields) {
+            for (String token : tokens(field)) {
+                Ints list = positions.get(token);
+                if (list == null) {
+                    list = new Ints();
+                    positions.put(token, list);
+                }
+                list.add(position++);
+            }
+            position += FIELD_GAP;
+        }
+        for (Map.Entry<String, Ints> term : positions.entrySet()) {
+            Postings postings = terms.get(term.getKey());
+            if (postings == null) {
+                postings = new Postings();
+                terms.put(term.getKey(), postings);
+            }
+            postings.add(doc, term.getValue());
+        }
+        changed = true;
+    }
+
+    private void remove(String path) {
+        Integer doc = docs.remove(path);
+        if (doc != null) {
+            paths.set(doc, null);
+            removed++;
+            changed = true;
+        }
+    }
+
+    /**
+     * Renumbers the live sessions from 0 and drops the postings of the
+     * rest
+     */
+    private void compact() {
+        int[] renumbered = new int[paths.size()];
+        List<String> compactPaths = new ArrayList<String>(docs.size());
+        Ints compactHashes = new Ints();
+        for (int doc = 0; doc < paths.size(); doc++) {
+            if (paths.get(doc) == null) {
+                renumbered[doc] = -1;
+            } else {
+                renumbered[doc] = compactPaths.size();
+                docs.put(paths.get(doc), compactPaths.size());
+                compactPaths.add(paths.get(doc));
+                compactHashes.add(hashes.values[doc]);
+            }
+        }
+
+        TreeMap<String, Postings> compactTerms = new TreeMap<String, Postings>();
+        for (Map.Entry<String, Postings> term : terms.entrySet()) {
+            Postings postings = new Postings();
+            Reader reader = new Reader(term.getValue());
+            Ints positions = new Ints();
+            while (reader.next()) {
+                if (renumbered[reader.doc] != -1) {
+                    positions.values = reader.positions();
+                    positions.size = positions.values.length;
+                    postings.add(renumbered[reader.doc], positions);
+                }
+            }
+            if (postings.docs > 0) {
+                compactTerms.put(term.getKey(), postings);
+            }
+        }
+        terms = compactTerms;
+        paths = compactPaths;
+        hashes = compactHashes;
+        removed = 0;
+        changed = true;
+    }
+
+    private void write() throws IOException {
+        if (removed > 0) {
+            compact();
+        }
+        File temp = new File(indexFile.getPath() + TEMP_SUFFIX);
+        FileOutputStream stream = new FileOutputStream(temp);
+        boolean written = false;
+        try {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(stream, 64 * 1024), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(paths.size());
+            for (int doc = 0; doc < paths.size(); doc++) {
+                out.writeUTF(paths.get(doc));
+                out.writeInt(hashes.values[doc]);
+            }
+            out.writeInt(terms.size());
+            for (Map.Entry<String, Postings> term : terms.entrySet()) {
+                Postings postings = term.getValue();
+                out.writeUTF(term.getKey());
+                out.writeInt(postings.docs);
+                out.writeInt(postings.lastDoc);
+                out.writeInt(postings.length);
+                out.write(postings.bytes, 0, postings.length);
+            }
+            out.flush();
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            stream.getFD().sync();
+            written = true;
+        } finally {
+            stream.close();
+            if (!written) {
+                temp.delete();
+            }
+        }
+        FileUtils.replace(temp, indexFile);
+    }
+
+    private void read() throws IOException {
+        CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(new FileInputStream(indexFile), 64 * 1024), new CRC32());
+        try {
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a search index: " + indexFile);
+            }
+            int count = in.readInt();
+            for (int doc = 0; doc < count; doc++) {
+                String path = in.readUTF();
+                paths.add(path);
+                hashes.add(in.readInt());
+                docs.put(path, doc);
+            }
+            int termCount = in.readInt();
+            for (int i = 0; i < termCount; i++) {
+                String term = in.readUTF();
+                Postings postings = new Postings();
+                postings.docs = in.readInt();
+                postings.lastDoc = in.readInt();
+                postings.length = in.readInt();
+                if (postings.length < 0 || postings.lastDoc >= count) {
+                    throw new IOException("Corrupt search index: " + indexFile);
+                }
+                postings.bytes = new byte[postings.length];
+                in.readFully(postings.bytes);
+                terms.put(term, postings);
+            }
+            int expected = (int) checked.getChecksum().getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("Corrupt search index: " + indexFile);
+            }
+        } finally {
+            checked.close();
+        }
+    }
+}
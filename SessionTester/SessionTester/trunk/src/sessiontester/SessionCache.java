@@ -0,0 +1,205 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.File;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the sessions Persistor.load read most recently, so reports and
+ * browsing do not parse the same files again.
+ *
+ * A session is found again only while its file has the same modification
+ * time and size; Persistor.save also drops the session it replaces. The
+ * cache holds up to a number of characters of session text, dropping the
+ * least recently used sessions first, and holds them through soft
+ * references so the garbage collector can take them back when memory
+ * runs low.
+ *
+ * Callers get their own copy of a cached session, which they are free to
+ * change.
+ */
+public class SessionCache {
+
+    private static class Entry extends SoftReference<TestingSession> {
+
+        final String key;
+        final long modified;
+        final long length;
+        final long weight;
+
+        Entry(String key, long modified, long length, TestingSession session, long weight, ReferenceQueue<TestingSession> queue) {
+            super(session, queue);
+            this.key = key;
+            this.modified = modified;
+            this.length = length;
+            this.weight = weight;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private final ReferenceQueue<TestingSession> collected = new ReferenceQueue<TestingSession>();
+    private long capacity;
+    private long weight;
+    private long hits;
+    private long misses;
+
+    /**
+     * A cache holding up to capacity characters of session text
+     */
+    public SessionCache(long capacity) {
+        setCapacity(capacity);
+    }
+
+    /**
+     * Changes how many characters of session text the cache holds. A
+     * capacity of 0 turns the cache off.
+     */
+    public synchronized void setCapacity(long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        evict();
+    }
+
+    public synchronized long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns a copy of the session cached for file if the file still has
+     * the given modification time and length, or null
+     */
+    public synchronized TestingSession get(File file, long modified, long length) {
+        expunge();
+        String key = file.getAbsolutePath();
+        Entry entry = entries.get(key);
+        TestingSession session = (entry != null && entry.modified == modified && entry.length == length) ? entry.get() : null;
+        if (session == null) {
+            if (entry != null) {
+                remove(key);
+            }
+            misses++;
+            return null;
+        }
+        hits++;
+        return copy(session);
+    }
+
+    /**
+     * Caches a copy of the session read from file when it had the given
+     * modification time and length
+     */
+    public synchronized void put(File file, long modified, long length, TestingSession session) {
+        expunge();
+        String key = file.getAbsolutePath();
+        remove(key);
+        long sessionWeight = weigh(session);
+        if (sessionWeight > capacity) {
+            return;
+        }
+        entries.put(key, new Entry(key, modified, length, copy(session), sessionWeight, collected));
+        weight += sessionWeight;
+        evict();
+    }
+
+    /**
+     * Drops the session cached for file, if any
+     */
+    public synchronized void invalidate(File file) {
+        remove(file.getAbsolutePath());
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * The number of sessions cached, including any the garbage collector
+     * has taken back since the last lookup
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * The number of characters of session text cached
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            weight -= entry.weight;
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (weight > capacity && eldest.hasNext()) {
+            weight -= eldest.next().weight;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Drops the entries whose sessions the garbage collector took back
+     */
+    private void expunge() {
+        Entry entry;
+        while ((entry = (Entry) collected.poll()) != null) {
+            if (entries.get(entry.key) == entry) {
+                remove(entry.key);
+            }
+        }
+    }
+
+    private static long weigh(TestingSession session) {
+        long characters = 0;
+        for (int i = 0; i < Persistor.FIELDS.length; i++) {
+            characters += Persistor.getField(session, i).length();
+        }
+        for (String name : session.getExtensionNames()) {
+            characters += name.length() + session.getExtension(name).length();
+        }
+        return characters;
+    }
+
+    private static TestingSession copy(TestingSession session) {
+        TestingSession copy = new TestingSession();
+        for (int i = 0; i < Persistor.FIELDS.length; i++) {
+            Persistor.setField(copy, i, Persistor.getField(session, i));
+        }
+        for (String name : session.getExtensionNames()) {
+            copy.setExtension(name, session.getExtension(name));
+        }
+        if (session.getTimeline() != null) {
+            copy.setTimeline(session.getTimeline().copy());
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,889 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A catalog of the sessions under an archive directory, kept in a file at
+ * its root: the header fields, path, size, modification time and CRC32
+ * of every session, with indexes sorted by date, tester and area, so
+ * lookups never touch the session files.
+ *
+ * The catalog remembers the modification time of every directory it
+ * scanned. Opening it rescans only the directories that changed since,
+ * which catches up with sessions added, removed or packed while it was
+ * closed. Persistor.save updates open catalogs directly.
+ *
+ * Packed sessions are cataloged under the file they were packed from,
+ * which Persistor.load still reads.
+ */
+public class SessionCatalog {
+
+    public static final String FILE_NAME = "catalog.idx";
+    private static final int MAGIC = 0x53544349; //"STCI"
+    private static final int VERSION = 1;
+    private static final String TEMP_SUFFIX = ".tmp";
+    //A directory modified this recently may change again within the same time stamp
+    private static final long RACY_MILLIS = 2000;
+    private static final Map<File, SessionCatalog> OPEN = new HashMap<File, SessionCatalog>();
+    //Catalogs being read or built by open, guarded by OPEN
+    private static final List<SessionCatalog> LOADING = new ArrayList<SessionCatalog>();
+    private static Logger logger = Logger.getLogger(SessionCatalog.class.getName());
+
+    /**
+     * What the catalog knows about one session
+     */
+    public static class Entry {
+
+        private final File file;
+        private final String path;
+        private final long size;
+        private final long modified;
+        private final int hash;
+        private final long date;
+        private final String start;
+        private final String end;
+        private final String duration;
+        private final String tester;
+        private final String mission;
+        private final String area;
+
+        Entry(File root, String path, long size, long modified, int hash, long date,
+                String start, String end, String duration, String tester, String mission, String area) {
+            this.file = new File(root, path);
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.date = date;
+            this.start = start;
+            this.end = end;
+            this.duration = duration;
+            this.tester = tester;
+            this.mission = mission;
+            this.area = area;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * The path relative to the catalog root, separated by '/'
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getModified() {
+            return modified;
+        }
+
+        /**
+         * The CRC32 of the stored bytes
+         */
+        public int getHash() {
+            return hash;
+        }
+
+        /**
+         * When the session started, from its file name, or the
+         * modification time if the name has no time stamp
+         */
+        public Date getDate() {
+            return new Date(date);
+        }
+
+        long getTime() {
+            return date;
+        }
+
+        public String getStart() {
+            return start;
+        }
+
+        public String getEnd() {
+            return end;
+        }
+
+        public String getDuration() {
+            return duration;
+        }
+
+        public String getTester() {
+            return tester;
+        }
+
+        public String getMission() {
+            return mission;
+        }
+
+        public String getArea() {
+            return area;
+        }
+
+        /**
+         * Whether other catalogs the same bytes, whenever they were written
+         */
+        boolean sameSession(Entry other) {
+            return size == other.size && hash == other.hash && date == other.date
+                    && start.equals(other.start) && end.equals(other.end) && duration.equals(other.duration)
+                    && tester.equals(other.tester) && mission.equals(other.mission) && area.equals(other.area);
+        }
+    }
+
+    private static final Comparator<Entry> BY_DATE = new Comparator<Entry>() {
+
+        @Override
+        public int compare(Entry a, Entry b) {
+            if (a.date != b.date) {
+                return (a.date < b.date) ? -1 : 1;
+            }
+            return a.path.compareTo(b.path);
+        }
+    };
+    private static final Comparator<Entry> BY_TESTER = new Comparator<Entry>() {
+
+        @Override
+        public int compare(Entry a, Entry b) {
+            int result = String.CASE_INSENSITIVE_ORDER.compare(a.tester, b.tester);
+            return (result != 0) ? result : BY_DATE.compare(a, b);
+        }
+    };
+    private static final Comparator<Entry> BY_AREA = new Comparator<Entry>() {
+
+        @Override
+        public int compare(Entry a, Entry b) {
+            int result = String.CASE_INSENSITIVE_ORDER.compare(a.area, b.area);
+            return (result != 0) ? result : BY_DATE.compare(a, b);
+        }
+    };
+
+    private final File root;
+    private final File catalogFile;
+    //Directory path to the sessions in it, by file name
+    private final Map<String, Map<String, Entry>> directoryEntries = new HashMap<String, Map<String, Entry>>();
+    private final Map<String, Long> directories = new HashMap<String, Long>();
+    private final Set<String> dirty = new HashSet<String>();
+    //Guarded by OPEN
+    private final Set<File> changedWhileLoading = new HashSet<File>();
+    //Entries of sessions saved since the last lookup. Guarded by itself, so
+    //a save never waits for a rescan.
+    private final List<Entry> saves = new ArrayList<Entry>();
+    private Entry[] byDate;
+    private Entry[] byTester;
+    private Entry[] byArea;
+    private boolean changed;
+    private boolean timesChanged;
+    private long version;
+
+    private SessionCatalog(File root) {
+        this.root = root;
+        this.catalogFile = new File(root, FILE_NAME);
+    }
+
+    /**
+     * Returns the catalog of the sessions under root, reading it from disk
+     * and bringing it up to date the first time. That can mean reading
+     * every session, so it happens without holding up saves meanwhile;
+     * the directories they change are rescanned once it is open.
+     */
+    public static SessionCatalog open(File root) throws IOException {
+        File key = root.getAbsoluteFile();
+        SessionCatalog catalog;
+        synchronized (OPEN) {
+            catalog = OPEN.get(key);
+            if (catalog != null) {
+                return catalog;
+            }
+            catalog = new SessionCatalog(key);
+            LOADING.add(catalog);
+        }
+
+        boolean loaded = false;
+        try {
+            catalog.load();
+            loaded = true;
+        } finally {
+            synchronized (OPEN) {
+                LOADING.remove(catalog);
+                //Another thread may have opened it meanwhile
+                if (loaded && !OPEN.containsKey(key)) {
+                    OPEN.put(key, catalog);
+                    for (File directory : catalog.changedWhileLoading) {
+                        catalog.markDirty(directory);
+                    }
+                }
+            }
+        }
+        synchronized (OPEN) {
+            return OPEN.get(key);
+        }
+    }
+
+    /**
+     * Writes every open catalog that has changed
+     */
+    public static void flushAll() throws IOException {
+        for (SessionCatalog catalog : openCatalogs()) {
+            catalog.flush();
+        }
+    }
+
+    /**
+     * Writes the catalog of root if it is open and stops keeping it up to
+     * date
+     */
+    public static void close(File root) throws IOException {
+        SessionCatalog catalog;
+        synchronized (OPEN) {
+            catalog = OPEN.remove(root.getAbsoluteFile());
+        }
+        if (catalog != null) {
+            catalog.flush();
+        }
+    }
+
+    /**
+     * Called by Persistor.save with the size and CRC32 of what it wrote.
+     * The entry is queued and added before the next lookup.
+     */
+    static void saved(File file, TestingSession session, long size, int hash) {
+        changedWhileLoading(file.getParentFile());
+        for (SessionCatalog catalog : openCatalogs()) {
+            catalog.queue(file, session, size, hash);
+        }
+    }
+
+    /**
+     * Tells open catalogs that sessions in directory were moved or
+     * removed, so it is rescanned before the next lookup
+     */
+    static void changed(File directory) {
+        changedWhileLoading(directory);
+        for (SessionCatalog catalog : openCatalogs()) {
+            catalog.markDirty(directory);
+        }
+    }
+
+    private static List<SessionCatalog> openCatalogs() {
+        synchronized (OPEN) {
+            return new ArrayList<SessionCatalog>(OPEN.values());
+        }
+    }
+
+    private static void changedWhileLoading(File directory) {
+        synchronized (OPEN) {
+            for (SessionCatalog catalog : LOADING) {
+                catalog.changedWhileLoading.add(directory);
+            }
+        }
+    }
+
+    /**
+     * Brings every open catalog up to date with the directories marked
+     * as changed
+     */
+    static void refreshAll() throws IOException {
+        for (SessionCatalog catalog : openCatalogs()) {
+            catalog.getVersion();
+        }
+    }
+
+    public synchronized int size() throws IOException {
+        refresh();
+        return byDate.length;
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * Changes whenever an entry is added, changed or removed
+     */
+    public synchronized long getVersion() throws IOException {
+        refresh();
+        return version;
+    }
+
+    /**
+     * Every session, oldest first
+     */
+    public synchronized List<Entry> all() throws IOException {
+        refresh();
+        return list(byDate, 0, byDate.length);
+    }
+
+    /**
+     * The session at a path relative to the root, or null
+     */
+    public synchronized Entry get(String path) throws IOException {
+        refresh();
+        Map<String, Entry> entries = directoryEntries.get(parent(path));
+        return (entries != null) ? entries.get(path.substring(path.lastIndexOf('/') + 1)) : null;
+    }
+
+    /**
+     * The sessions that started from from up to but not including to,
+     * oldest first
+     */
+    public synchronized List<Entry> byDate(Date from, Date to) throws IOException {
+        refresh();
+        Entry low = key(from.getTime(), "", "", "");
+        Entry high = key(to.getTime(), "", "", "");
+        return list(byDate, lowerBound(byDate, low, BY_DATE), lowerBound(byDate, high, BY_DATE));
+    }
+
+    /**
+     * The sessions of a tester, ignoring case, oldest first
+     */
+    public synchronized List<Entry> byTester(String tester) throws IOException {
+        refresh();
+        int first = lowerBound(byTester, key(Long.MIN_VALUE, "", tester, ""), BY_TESTER);
+        int last = first;
+        while (last < byTester.length && byTester[last].tester.equalsIgnoreCase(tester)) {
+            last++;
+        }
+        return list(byTester, first, last);
+    }
+
+    /**
+     * The sessions in an area, ignoring case, oldest first
+     */
+    public synchronized List<Entry> byArea(String area) throws IOException {
+        refresh();
+        int first = lowerBound(byArea, key(Long.MIN_VALUE, "", "", area), BY_AREA);
+        int last = first;
+        while (last < byArea.length && byArea[last].area.equalsIgnoreCase(area)) {
+            last++;
+        }
+        return list(byArea, first, last);
+    }
+
+    /**
+     * Writes the catalog if it changed since it was last written
+     */
+    public synchronized void flush() throws IOException {
+        if (changed) {
+            write();
+            changed = false;
+        }
+    }
+
+    /**
+     * Drops everything and rescans the whole archive
+     */
+    public synchronized void rebuild() throws IOException {
+        directoryEntries.clear();
+        directories.clear();
+        dirty.clear();
+        verify();
+        write();
+        changed = false;
+    }
+
+    private Entry key(long date, String path, String tester, String area) {
+        return new Entry(root, path, 0, 0, 0, date, "", "", "", tester, "", area);
+    }
+
+    private static int lowerBound(Entry[] index, Entry key, Comparator<Entry> order) {
+        int low = 0;
+        int high = index.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (order.compare(index[mid], key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static List<Entry> list(Entry[] index, int from, int to) {
+        return new ArrayList<Entry>(Arrays.asList(index).subList(from, Math.max(from, to)));
+    }
+
+    private void load() throws IOException {
+        if (catalogFile.exists()) {
+            try {
+                read();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Rebuilding unreadable catalog " + catalogFile, e);
+                directoryEntries.clear();
+                directories.clear();
+                byDate = null;
+            }
+        }
+        verify();
+        if (changed || timesChanged) {
+            write();
+            changed = false;
+        }
+    }
+
+    /**
+     * Rescans the directories that changed since they were last scanned
+     */
+    private void verify() throws IOException {
+        Map<String, List<String>> children = new HashMap<String, List<String>>();
+        for (String path : directories.keySet()) {
+            if (path.length() > 0) {
+                String parent = parent(path);
+                List<String> siblings = children.get(parent);
+                if (siblings == null) {
+                    siblings = new ArrayList<String>();
+                    children.put(parent, siblings);
+                }
+                siblings.add(path);
+            }
+        }
+        verify("", children);
+    }
+
+    private void verify(String path, Map<String, List<String>> children) throws IOException {
+        File directory = file(path);
+        Long scanned = directories.get(path);
+        List<String> subdirectories;
+        if (scanned != null && scanned == directory.lastModified() && !dirty.contains(path)) {
+            subdirectories = children.get(path);
+        } else {
+            subdirectories = rescan(path);
+        }
+        if (subdirectories != null) {
+            for (String subdirectory : subdirectories) {
+                verify(subdirectory, children);
+            }
+        }
+    }
+
+    private void refresh() throws IOException {
+        List<Entry> saved;
+        synchronized (saves) {
+            saved = new ArrayList<Entry>(saves);
+            saves.clear();
+        }
+        for (Entry entry : saved) {
+            put(entry);
+        }
+        if (!dirty.isEmpty()) {
+            for (String path : new ArrayList<String>(dirty)) {
+                if (dirty.contains(path)) {
+                    verify(path, new HashMap<String, List<String>>());
+                }
+            }
+        }
+        if (byDate == null) {
+            version++;
+            List<Entry> all = new ArrayList<Entry>();
+            for (Map<String, Entry> entries : directoryEntries.values()) {
+                all.addAll(entries.values());
+            }
+            byDate = all.toArray(new Entry[all.size()]);
+            byTester = byDate.clone();
+            byArea = byDate.clone();
+            Arrays.sort(byDate, BY_DATE);
+            Arrays.sort(byTester, BY_TESTER);
+            Arrays.sort(byArea, BY_AREA);
+        }
+    }
+
+    /**
+     * Catalogs the sessions directly in a directory, reusing the entries
+     * of files whose size and modification time have not changed, and
+     * returns its subdirectories
+     */
+    private List<String> rescan(String path) throws IOException {
+        File directory = file(path);
+        dirty.remove(path);
+        File[] files = directory.listFiles();
+        if (files == null) {
+            removeDirectory(path);
+            return null;
+        }
+        long modified = directory.lastModified();
+        Long scanned = (System.currentTimeMillis() - modified < RACY_MILLIS) ? -1 : modified;
+        Long previousScan = directories.put(path, scanned);
+        boolean known = previousScan != null;
+        if (known && !previousScan.equals(scanned)) {
+            timesChanged = true;
+        }
+
+        Map<String, Entry> previous = directoryEntries.get(path);
+        if (previous == null) {
+            previous = new HashMap<String, Entry>();
+        }
+        Map<String, Entry> entries = new HashMap<String, Entry>();
+        Set<String> unpacked = new HashSet<String>();
+        List<String> subdirectories = new ArrayList<String>();
+        File packFile = null;
+
+        for (File file : files) {
+            String childPath = child(path, file.getName());
+            if (file.isDirectory()) {
+                subdirectories.add(childPath);
+            } else if (SessionPack.isPack(file)) {
+                packFile = file;
+            } else if (SessionPack.entryName(file) != null) {
+                unpacked.add(SessionPack.entryName(file));
+                Entry entry = previous.get(file.getName());
+                if (entry == null || entry.size != file.length() || entry.modified != file.lastModified()) {
+                    entry = catalog(file, childPath);
+                }
+                if (entry != null) {
+                    entries.put(file.getName(), entry);
+                }
+            }
+        }
+
+        if (packFile != null) {
+            try {
+                SessionPack pack = SessionPack.open(packFile);
+                for (String name : pack.getNames()) {
+                    if (!unpacked.contains(name)) {
+                        Entry entry = previous.get(name);
+                        if (entry == null || entry.size != pack.getLength(name) || entry.modified != pack.getModified(name)) {
+                            entry = catalog(pack, name, child(path, name));
+                        }
+                        entries.put(name, entry);
+                    }
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not catalog " + packFile, e);
+            }
+        }
+
+        for (String subdirectory : new ArrayList<String>(directories.keySet())) {
+            if (subdirectory.length() > 0 && parent(subdirectory).equals(path) && !subdirectories.contains(subdirectory)) {
+                removeDirectory(subdirectory);
+            }
+        }
+        //Unchanged files keep their entries, so only a new or different file
+        //changes the catalog. A new directory time alone is written when the
+        //catalog is opened, not on every save into the directory.
+        if (!known || !entries.equals(previous)) {
+            changed = true;
+            byDate = null;
+        }
+        if (entries.isEmpty()) {
+            directoryEntries.remove(path);
+        } else {
+            directoryEntries.put(path, entries);
+        }
+        return subdirectories;
+    }
+
+    private void removeDirectory(String path) {
+        String prefix = path + "/";
+        for (String directory : new ArrayList<String>(directories.keySet())) {
+            if (directory.equals(path) || directory.startsWith(prefix)) {
+                directories.remove(directory);
+                directoryEntries.remove(directory);
+                dirty.remove(directory);
+            }
+        }
+        changed = true;
+        byDate = null;
+    }
+
+    private Entry catalog(File file, String path) {
+        try {
+            TestingSession session = Persistor.loadHeader(file);
+            CRC32 crc = new CRC32();
+            InputStream in = new FileInputStream(file);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    crc.update(buffer, 0, count);
+                }
+            } finally {
+                in.close();
+            }
+            return entry(path, session, file.length(), file.lastModified(), (int) crc.getValue());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not catalog " + file, e);
+            return null;
+        }
+    }
+
+    private Entry catalog(SessionPack pack, String name, String path) throws IOException {
+        byte[] bytes = pack.readBytes(name);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        TestingSession session = new TestingSession();
+        BinarySessionFormat.read(new ByteArrayInputStream(bytes), session, true);
+        return entry(path, session, bytes.length, pack.getModified(name), (int) crc.getValue());
+    }
+
+    private Entry entry(String path, TestingSession session, long size, long modified, int hash) {
+        long date = parseTimeStamp(path.substring(path.lastIndexOf('/') + 1));
+        return new Entry(root, path, size, modified, hash, (date != -1) ? date : modified,
+                session.getStart(), session.getEnd(), session.getDuration(),
+                session.getTester(), session.getMission(), session.getArea());
+    }
+
+    private void queue(File file, TestingSession session, long size, int hash) {
+        String path = relativePath(file);
+        if (path != null) {
+            Entry entry = entry(path, session, size, file.lastModified(), hash);
+            synchronized (saves) {
+                saves.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Adds or replaces the entry of a saved session. The catalog only
+     * changes if the session did; a directory it has not scanned yet is
+     * rescanned to pick it up.
+     */
+    private void put(Entry entry) {
+        String directory = parent(entry.path);
+        if (!directories.containsKey(directory)) {
+            dirty.add(directory);
+        }
+        Map<String, Entry> entries = directoryEntries.get(directory);
+        if (entries == null) {
+            entries = new HashMap<String, Entry>();
+            directoryEntries.put(directory, entries);
+        }
+        String name = entry.path.substring(entry.path.lastIndexOf('/') + 1);
+        Entry previous = entries.get(name);
+        if (previous != null && previous.sameSession(entry)) {
+            return;
+        }
+        entries.put(name, entry);
+        changed = true;
+        byDate = null;
+    }
+
+    private synchronized void markDirty(File directory) {
+        String path = relativePath(directory);
+        if (path != null) {
+            dirty.add(path);
+            changed = true;
+        }
+    }
+
+    private String relativePath(File file) {
+        return relativePath(root, file);
+    }
+
+    /**
+     * The path of file relative to root, separated by '/', or null if it
+     * is not under it
+     */
+    static String relativePath(File root, File file) {
+        String rootPath = root.getAbsolutePath();
+        String filePath = file.getAbsolutePath();
+        if (filePath.equals(rootPath)) {
+            return "";
+        }
+        if (!filePath.startsWith(rootPath + File.separator)) {
+            return null;
+        }
+        return filePath.substring(rootPath.length() + 1).replace(File.separatorChar, '/');
+    }
+
+    private File file(String path) {
+        return (path.length() == 0) ? root : new File(root, path);
+    }
+
+    private static String parent(String path) {
+        int slash = path.lastIndexOf('/');
+        return (slash == -1) ? "" : path.substring(0, slash);
+    }
+
+    private static String child(String path, String name) {
+        return (path.length() == 0) ? name : path + "/" + name;
+    }
+
+    /**
+     * The time in a name made by FileUtils.buildTestingSessionFile, or -1
+     */
+    static long parseTimeStamp(String name) {
+        if (!name.startsWith(FileUtils.SESSION_FILE_PREFIX)) {
+            return -1;
+        }
+        String[] parts = name.substring(FileUtils.SESSION_FILE_PREFIX.length()).split("[_.]");
+        if (parts.length < 7) {
+            return -1;
+        }
+        try {
+            Calendar calendar = Calendar.getInstance();
+            calendar.clear();
+            calendar.set(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]) - 1, Integer.parseInt(parts[2]),
+                    Integer.parseInt(parts[3]), Integer.parseInt(parts[4]), Integer.parseInt(parts[5]));
+            calendar.set(Calendar.MILLISECOND, Integer.parseInt(parts[6]));
+            return calendar.getTimeInMillis();
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Writes the entries in date order, then the tester and area indexes
+     * as positions in that order, then a CRC32 of all of it
+     */
+    private void write() throws IOException {
+        refresh();
+        File temp = new File(catalogFile.getPath() + TEMP_SUFFIX);
+        FileOutputStream stream = new FileOutputStream(temp);
+        boolean written = false;
+        try {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(stream, 64 * 1024), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(directories.size());
+            for (Map.Entry<String, Long> directory : directories.entrySet()) {
+                writeString(out, directory.getKey());
+                //Directories still to be rescanned are rescanned on the next open
+                out.writeLong(dirty.contains(directory.getKey()) ? -1 : directory.getValue());
+            }
+
+            Map<Entry, Integer> positions = new HashMap<Entry, Integer>();
+            out.writeInt(byDate.length);
+            for (int i = 0; i < byDate.length; i++) {
+                Entry entry = byDate[i];
+                positions.put(entry, i);
+                writeString(out, entry.path);
+                out.writeLong(entry.size);
+                out.writeLong(entry.modified);
+                out.writeInt(entry.hash);
+                out.writeLong(entry.date);
+                writeString(out, entry.start);
+                writeString(out, entry.end);
+                writeString(out, entry.duration);
+                writeString(out, entry.tester);
+                writeString(out, entry.mission);
+                writeString(out, entry.area);
+            }
+            for (Entry entry : byTester) {
+                out.writeInt(positions.get(entry));
+            }
+            for (Entry entry : byArea) {
+                out.writeInt(positions.get(entry));
+            }
+            out.flush();
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            stream.getFD().sync();
+            written = true;
+        } finally {
+            stream.close();
+            if (!written) {
+                temp.delete();
+            }
+        }
+        FileUtils.replace(temp, catalogFile);
+        timesChanged = false;
+    }
+
+    private void read() throws IOException {
+        CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(new FileInputStream(catalogFile), 64 * 1024), new CRC32());
+        try {
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a session catalog: " + catalogFile);
+            }
+            int directoryCount = in.readInt();
+            for (int i = 0; i < directoryCount; i++) {
+                directories.put(readString(in), in.readLong());
+            }
+
+            int count = in.readInt();
+            Entry[] entries = new Entry[count];
+            for (int i = 0; i < count; i++) {
+                String path = readString(in);
+                entries[i] = new Entry(root, path, in.readLong(), in.readLong(), in.readInt(), in.readLong(),
+                        readString(in), readString(in), readString(in), readString(in), readString(in), readString(in));
+                String directory = parent(path);
+                Map<String, Entry> directoryMap = directoryEntries.get(directory);
+                if (directoryMap == null) {
+                    directoryMap = new HashMap<String, Entry>();
+                    directoryEntries.put(directory, directoryMap);
+                }
+                directoryMap.put(path.substring(path.lastIndexOf('/') + 1), entries[i]);
+            }
+            Entry[] testers = readIndex(in, entries);
+            Entry[] areas = readIndex(in, entries);
+            int expected = (int) checked.getChecksum().getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("Corrupt session catalog: " + catalogFile);
+            }
+            byDate = entries;
+            byTester = testers;
+            byArea = areas;
+        } finally {
+            checked.close();
+        }
+    }
+
+    private static Entry[] readIndex(DataInputStream in, Entry[] entries) throws IOException {
+        Entry[] index = new Entry[entries.length];
+        for (int i = 0; i < index.length; i++) {
+            int position = in.readInt();
+            if (position < 0 || position >= entries.length) {
+                throw new IOException("Corrupt session catalog index");
+            }
+            index[i] = entries[position];
+        }
+        return index;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > 64 * 1024 * 1024) {
+            throw new IOException("Corrupt session catalog string");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
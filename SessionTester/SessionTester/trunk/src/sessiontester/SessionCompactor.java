@@ -0,0 +1,107 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compresses the session files under a directory once they have not been
+ * written for a number of days. Persistor reads compressed files
+ * transparently, so nothing else needs to know which ones were.
+ *
+ * With packing turned on, those files are instead moved into the
+ * SessionPack of their day directory.
+ *
+ * Meant to run on a background thread; a file that cannot be compressed
+ * is logged and left as it is.
+ */
+public class SessionCompactor implements Runnable {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static Logger logger = Logger.getLogger(SessionCompactor.class.getName());
+    private final File root;
+    private final int days;
+    private boolean pack;
+
+    public SessionCompactor(File root, int days) {
+        if (days < 1) {
+            throw new IllegalArgumentException("days must be at least 1: " + days);
+        }
+        this.root = root;
+        this.days = days;
+    }
+
+    public void setPack(boolean pack) {
+        this.pack = pack;
+    }
+
+    /**
+     * Starts compacting on a low priority daemon thread
+     */
+    public Thread start() {
+        Thread thread = new Thread(this, "Session compactor");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+        return thread;
+    }
+
+    @Override
+    public void run() {
+        int compacted = compact();
+        if (compacted > 0) {
+            logger.info((pack ? "Packed " : "Compressed ") + compacted + " sessions older than " + days + " days");
+        }
+    }
+
+    /**
+     * Compresses or packs every session file last written more than days
+     * ago and returns how many were
+     */
+    public int compact() {
+        return compact(root, System.currentTimeMillis() - days * DAY);
+    }
+
+    private int compact(File directory, long cutoff) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+
+        int compacted = 0;
+        if (pack) {
+            try {
+                compacted += SessionPack.pack(directory, cutoff);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not pack " + directory, e);
+            }
+        }
+        for (File file : files) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            if (file.isDirectory()) {
+                compacted += compact(file, cutoff);
+            } else if (!pack && FileUtils.isSessionFile(file) && !Persistor.isCompressed(file) && file.lastModified() < cutoff) {
+                try {
+                    Persistor.compress(file);
+                    compacted++;
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Could not compress " + file, e);
+                }
+            }
+        }
+        return compacted;
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A day's finished sessions rolled into one file, so a large archive is a
+ * few thousand files instead of hundreds of thousands.
+ *
+ * A pack holds each session in BinarySessionFormat, one after another,
+ * followed by an index of the entry names, offsets, lengths and
+ * modification times, and a fixed size trailer pointing at the index. A
+ * single session is read by seeking to it; loadAll maps the whole data
+ * region at once.
+ *
+ * Entries are named after the session files they were packed from, eg.
+ * testing_session_2008_10_17_14_10_0_0.xml.
+ */
+public class SessionPack {
+
+    public static final String FILE_NAME = "sessions.pack";
+    private static final int MAGIC = 0x5354504b; //"STPK"
+    private static final int TRAILER_SIZE = 8 + 4 + 4;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Receives the sessions of a pack in index order
+     */
+    public interface Visitor {
+
+        void visit(String name, TestingSession session) throws IOException;
+    }
+
+    private final File file;
+    private final long indexOffset;
+    private final String[] names;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final long[] modified;
+    private final Map<String, Integer> entries = new HashMap<String, Integer>();
+
+    private SessionPack(File file, long indexOffset, int count) {
+        this.file = file;
+        this.indexOffset = indexOffset;
+        this.names = new String[count];
+        this.offsets = new long[count];
+        this.lengths = new int[count];
+        this.modified = new long[count];
+    }
+
+    public static boolean isPack(File file) {
+        return file.getName().equals(FILE_NAME);
+    }
+
+    /**
+     * Reads the index of a pack
+     */
+    public static SessionPack open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            if (length < TRAILER_SIZE) {
+                throw new IOException("Not a session pack: " + file);
+            }
+            raf.seek(length - TRAILER_SIZE);
+            long indexOffset = raf.readLong();
+            int count = raf.readInt();
+            if (raf.readInt() != MAGIC || indexOffset < 0 || indexOffset > length - TRAILER_SIZE || count < 0) {
+                throw new IOException("Not a session pack: " + file);
+            }
+
+            SessionPack pack = new SessionPack(file, indexOffset, count);
+            raf.seek(indexOffset);
+            DataInputStream index = new DataInputStream(new BufferedInputStream(Channels.newInputStream(raf.getChannel())));
+            for (int i = 0; i < count; i++) {
+                pack.names[i] = index.readUTF();
+                pack.offsets[i] = index.readLong();
+                pack.lengths[i] = index.readInt();
+                pack.modified[i] = index.readLong();
+                if (pack.offsets[i] < 0 || pack.offsets[i] + pack.lengths[i] > indexOffset) {
+                    throw new IOException("Corrupt session pack index: " + file);
+                }
+                pack.entries.put(pack.names[i], i);
+            }
+            return pack;
+        } finally {
+            raf.close();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public List<String> getNames() {
+        List<String> result = new ArrayList<String>(names.length);
+        for (String name : names) {
+            result.add(name);
+        }
+        return result;
+    }
+
+    public boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * The modification time of the file the entry was packed from
+     */
+    public long getModified(String name) {
+        return modified[indexOf(name)];
+    }
+
+    /**
+     * The size of the encoded session stored under name
+     */
+    int getLength(String name) {
+        return lengths[indexOf(name)];
+    }
+
+    public TestingSession load(String name) throws IOException {
+        TestingSession session = new TestingSession();
+        read(name, session, false);
+        return session;
+    }
+
+    public TestingSession loadHeader(String name) throws IOException {
+        TestingSession session = new TestingSession();
+        read(name, session, true);
+        return session;
+    }
+
+    /**
+     * Decodes every session in the pack from one memory mapped region
+     */
+    public void loadAll(Visitor visitor) throws IOException {
+        if (indexOffset > Integer.MAX_VALUE) {
+            for (String name : names) {
+                visitor.visit(name, load(name));
+            }
+            return;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        ByteBuffer data;
+        try {
+            data = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, indexOffset);
+        } finally {
+            //The mapping stays valid after the channel is closed
+            raf.close();
+        }
+
+        for (int i = 0; i < names.length; i++) {
+            ByteBuffer entry = data.duplicate();
+            entry.position((int) offsets[i]);
+            entry.limit((int) offsets[i] + lengths[i]);
+            TestingSession session = new TestingSession();
+            BinarySessionFormat.read(new ByteBufferInputStream(entry), session, false);
+            visitor.visit(names[i], session);
+        }
+    }
+
+    private int indexOf(String name) {
+        Integer index = entries.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException(name + " is not in " + file);
+        }
+        return index;
+    }
+
+    void read(String name, TestingSession session, boolean headerOnly) throws IOException {
+        BinarySessionFormat.read(new ByteArrayInputStream(readBytes(name)), session, headerOnly);
+    }
+
+    /**
+     * The encoded session stored under name
+     */
+    byte[] readBytes(String name) throws IOException {
+        int index = indexOf(name);
+        byte[] bytes = new byte[lengths[index]];
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            raf.seek(offsets[index]);
+            raf.readFully(bytes);
+        } finally {
+            raf.close();
+        }
+        return bytes;
+    }
+
+    /**
+     * Moves the session files in directory last written before cutoff into
+     * its pack, merging them with any sessions already packed, and returns
+     * how many were moved. The pack is rewritten through a synced temp
+     * file before the session files are deleted, so a crash at any point
+     * leaves every session readable.
+     */
+    public static int pack(File directory, long cutoff) throws IOException {
+        List<File> files = new ArrayList<File>();
+        File[] children = directory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isFile() && entryName(child) != null && child.lastModified() < cutoff) {
+                    files.add(child);
+                }
+            }
+        }
+        if (files.isEmpty()) {
+            return 0;
+        }
+
+        //Entries sorted by name, newly packed files replacing packed copies
+        Map<String, byte[]> packed = new TreeMap<String, byte[]>();
+        Map<String, Long> times = new HashMap<String, Long>();
+        File packFile = new File(directory, FILE_NAME);
+        if (packFile.exists()) {
+            SessionPack pack = open(packFile);
+            RandomAccessFile raf = new RandomAccessFile(packFile, "r");
+            try {
+                for (int i = 0; i < pack.names.length; i++) {
+                    byte[] bytes = new byte[pack.lengths[i]];
+                    raf.seek(pack.offsets[i]);
+                    raf.readFully(bytes);
+                    packed.put(pack.names[i], bytes);
+                    times.put(pack.names[i], pack.modified[i]);
+                }
+            } finally {
+                raf.close();
+            }
+        }
+        for (File child : files) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            BinarySessionFormat.write(bytes, Persistor.load(child));
+            packed.put(entryName(child), bytes.toByteArray());
+            times.put(entryName(child), child.lastModified());
+        }
+
+        write(packFile, packed, times);
+        for (File child : files) {
+            if (!child.delete()) {
+                throw new IOException("Could not delete " + child + " after packing it");
+            }
+        }
+        SessionCatalog.changed(directory.getAbsoluteFile());
+        return files.size();
+    }
+
+    /**
+     * The entry name for a session file, or null if file is not one
+     */
+    static String entryName(File file) {
+        if (!FileUtils.isSessionFile(file)) {
+            return null;
+        }
+        String name = file.getName();
+        if (Persistor.isCompressed(file)) {
+            return name.substring(0, name.length() - Persistor.COMPRESSED_SUFFIX.length());
+        }
+        return name;
+    }
+
+    private static void write(File packFile, Map<String, byte[]> packed, Map<String, Long> times) throws IOException {
+        File temp = new File(packFile.getPath() + TEMP_SUFFIX);
+        FileOutputStream stream = new FileOutputStream(temp);
+        boolean written = false;
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+            for (byte[] bytes : packed.values()) {
+                out.write(bytes);
+            }
+            long offset = 0;
+            for (Map.Entry<String, byte[]> entry : packed.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(offset);
+                out.writeInt(entry.getValue().length);
+                out.writeLong(times.get(entry.getKey()));
+                offset += entry.getValue().length;
+            }
+            out.writeLong(offset);
+            out.writeInt(packed.size());
+            out.writeInt(MAGIC);
+            out.flush();
+            stream.getFD().sync();
+            written = true;
+        } finally {
+            stream.close();
+            if (!written) {
+                temp.delete();
+            }
+        }
+        FileUtils.replace(temp, packFile);
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
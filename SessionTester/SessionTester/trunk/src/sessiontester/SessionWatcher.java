@@ -0,0 +1,204 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches an archive directory for sessions written by anything other
+ * than Persistor.save, such as sync tools or a copy by hand, and keeps the
+ * open SessionCatalog and SearchIndex of it up to date.
+ *
+ * Every poll compares the modification time of each directory with the
+ * one seen last, which catches files added, removed or renamed. A file
+ * rewritten in place does not touch its directory, so every so often the
+ * watcher also compares the size and modification time of every file.
+ * Changes are handed over once no more have been seen for a quiet period,
+ * so a sync dropping hundreds of files causes one update, and only the
+ * directories that changed are rescanned.
+ */
+public class SessionWatcher implements Runnable {
+
+    //A directory modified this recently may change again within the same time stamp
+    private static final long RACY_MILLIS = 2000;
+    private static Logger logger = Logger.getLogger(SessionWatcher.class.getName());
+    private final File root;
+    private long pollInterval = 2000;
+    private long quietPeriod = 1000;
+    private long reconcileInterval = 5 * 60 * 1000;
+
+    private static class Directory {
+
+        long modified;
+        boolean racy;
+        long contents;
+        List<File> subdirectories = new ArrayList<File>();
+    }
+
+    private final Map<File, Directory> directories = new HashMap<File, Directory>();
+    private final Set<File> pending = new LinkedHashSet<File>();
+    private boolean started;
+    private long lastReconcile;
+    private long firstChange;
+    private long lastChange;
+
+    public SessionWatcher(File root) {
+        this.root = root.getAbsoluteFile();
+    }
+
+    /**
+     * How long to wait between polls, in milliseconds
+     */
+    public void setPollInterval(long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * How long no change must be seen before changes are handed over, in
+     * milliseconds. Changes are never held back for more than ten times
+     * this, so a steady trickle of files still gets through.
+     */
+    public void setQuietPeriod(long quietPeriod) {
+        this.quietPeriod = quietPeriod;
+    }
+
+    /**
+     * How often to compare every file as well as every directory, in
+     * milliseconds
+     */
+    public void setReconcileInterval(long reconcileInterval) {
+        this.reconcileInterval = reconcileInterval;
+    }
+
+    /**
+     * Starts watching on a low priority daemon thread, until it is
+     * interrupted
+     */
+    public Thread start() {
+        Thread thread = new Thread(this, "Session watcher");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+        return thread;
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                poll(System.currentTimeMillis());
+                Thread.sleep(pollInterval);
+            } catch (InterruptedException e) {
+                break;
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not update the indexes of " + root, e);
+            }
+        }
+    }
+
+    /**
+     * Looks for changes and hands over the ones that have settled. The
+     * first poll only records what is there. Returns the number of
+     * directories handed over.
+     */
+    int poll(long now) throws IOException {
+        boolean reconcile = started && now - lastReconcile >= reconcileInterval;
+        if (reconcile || !started) {
+            lastReconcile = now;
+        }
+        Set<File> seen = new LinkedHashSet<File>();
+        scan(root, reconcile, now, seen);
+        directories.keySet().retainAll(seen);
+
+        if (!started) {
+            started = true;
+            pending.clear();
+            return 0;
+        }
+        if (pending.isEmpty() || (now - lastChange < quietPeriod && now - firstChange < 10 * quietPeriod)) {
+            return 0;
+        }
+
+        List<File> changed = new ArrayList<File>(pending);
+        pending.clear();
+        for (File directory : changed) {
+            SessionCatalog.changed(directory);
+        }
+        SessionCatalog.refreshAll();
+        SearchIndex.updateAll();
+        logger.fine("Updated the indexes of " + changed.size() + " changed directories");
+        return changed.size();
+    }
+
+    private void scan(File file, boolean reconcile, long now, Set<File> seen) {
+        seen.add(file);
+        Directory directory = directories.get(file);
+        long modified = file.lastModified();
+        if (directory == null || directory.modified != modified || directory.racy || reconcile) {
+            File[] children = file.listFiles();
+            if (children == null) {
+                return;
+            }
+            Directory previous = directory;
+            directory = new Directory();
+            directory.modified = modified;
+            directory.racy = now - modified < RACY_MILLIS;
+            directory.contents = fingerprint(children, directory.subdirectories);
+            directories.put(file, directory);
+            //The directory time alone also changes for temporary files
+            if (previous == null || previous.contents != directory.contents) {
+                changed(file, now);
+            }
+        }
+        for (File subdirectory : directory.subdirectories) {
+            scan(subdirectory, reconcile, now, seen);
+        }
+    }
+
+    /**
+     * Combines the names of the subdirectories and the names, sizes and
+     * modification times of the session files in a directory, collecting
+     * the subdirectories on the way
+     */
+    private static long fingerprint(File[] children, List<File> subdirectories) {
+        //Summed so it does not depend on the order listFiles returns
+        long fingerprint = 0;
+        for (File child : children) {
+            long hash = child.getName().hashCode();
+            if (child.isDirectory()) {
+                subdirectories.add(child);
+                fingerprint += hash * 0x9E3779B97F4A7C15L;
+            } else if (SessionPack.isPack(child) || SessionPack.entryName(child) != null) {
+                hash = hash * 31 + child.length();
+                hash = hash * 31 + child.lastModified();
+                fingerprint += hash * 0x9E3779B97F4A7C15L;
+            }
+        }
+        return fingerprint;
+    }
+
+    private void changed(File directory, long now) {
+        if (pending.isEmpty()) {
+            firstChange = now;
+        }
+        pending.add(directory);
+        lastChange = now;
+    }
+}
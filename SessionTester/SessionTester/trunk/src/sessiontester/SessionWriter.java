@@ -0,0 +1,115 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves sessions on a single background thread, so the event dispatch
+ * thread never waits for the disk.
+ *
+ * A save replaces any snapshot of the same file that is still waiting, so
+ * a burst of saves only writes the newest one. Snapshots must not be
+ * changed once they have been handed over.
+ */
+public class SessionWriter {
+
+    public interface Listener {
+
+        /**
+         * Called on the writer thread after snapshot has been saved to file
+         */
+        void saved(File file, TestingSession snapshot);
+
+        /**
+         * Called on the writer thread if saving file failed
+         */
+        void failed(File file, Exception e);
+    }
+
+    private final Map<File, TestingSession> pending = new LinkedHashMap<File, TestingSession>();
+    private final ExecutorService executor;
+    private final Listener listener;
+    private boolean draining;
+    private final Runnable drain = new Runnable() {
+
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    public SessionWriter(Listener listener) {
+        this.listener = listener;
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Session writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public void save(File file, TestingSession snapshot) {
+        synchronized (pending) {
+            pending.put(file, snapshot);
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        executor.execute(drain);
+    }
+
+    /**
+     * Writes whatever is still waiting, then stops the writer thread.
+     * Returns false if that did not finish within the timeout.
+     */
+    public boolean shutdown(long timeoutMillis) throws InterruptedException {
+        executor.shutdown();
+        return executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void drain() {
+        while (true) {
+            File file;
+            TestingSession snapshot;
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    draining = false;
+                    return;
+                }
+                Iterator<Map.Entry<File, TestingSession>> next = pending.entrySet().iterator();
+                Map.Entry<File, TestingSession> entry = next.next();
+                next.remove();
+                file = entry.getKey();
+                snapshot = entry.getValue();
+            }
+
+            try {
+                Persistor.save(file, snapshot);
+            } catch (Exception e) {
+                listener.failed(file, e);
+                continue;
+            }
+            listener.saved(file, snapshot);
+        }
+    }
+}
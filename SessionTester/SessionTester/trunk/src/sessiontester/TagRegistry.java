@@ -0,0 +1,145 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The tags the parser recognizes: the built-in Parser.TAGS, whose ids are
+ * their indexes, followed by any custom tags from the preferences.
+ *
+ * All tags are compiled into one case-insensitive prefix trie, so matching
+ * a tag costs the length of the tag no matter how many are registered.
+ */
+public class TagRegistry {
+
+    private static class Node {
+
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        int tag = -1;
+
+        Node child(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node addChild(char c) {
+            Node node = child(c);
+            if (node == null) {
+                node = new Node();
+                char[] newKeys = new char[keys.length + 1];
+                Node[] newChildren = new Node[children.length + 1];
+                System.arraycopy(keys, 0, newKeys, 0, keys.length);
+                System.arraycopy(children, 0, newChildren, 0, children.length);
+                newKeys[keys.length] = c;
+                newChildren[children.length] = node;
+                keys = newKeys;
+                children = newChildren;
+            }
+            return node;
+        }
+    }
+
+    private final List<String> tags = new ArrayList<String>();
+    private final Node root = new Node();
+
+    public TagRegistry() {
+        for (String tag : Parser.TAGS) {
+            register(tag);
+        }
+    }
+
+    /**
+     * Builds a registry of the built-in tags plus a whitespace or comma
+     * separated list of custom tags, as stored in the preferences
+     */
+    public static TagRegistry withCustomTags(String customTags) {
+        TagRegistry registry = new TagRegistry();
+        if (customTags != null) {
+            for (String tag : customTags.split("[\\s,]+")) {
+                if (tag.length() > 0) {
+                    registry.register(tag);
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Adds a tag, prefixing it with '@' if needed, and returns its id.
+     * Registering an existing tag returns the id it already has.
+     */
+    public int register(String tag) {
+        //Lower case per character, as match() does, so the default locale
+        //cannot turn "@BUG" into something match() never finds
+        StringBuilder lowerCase = new StringBuilder(tag.length() + 1);
+        if (!tag.startsWith("@")) {
+            lowerCase.append('@');
+        }
+        for (int i = 0; i < tag.length(); i++) {
+            lowerCase.append(Character.toLowerCase(tag.charAt(i)));
+        }
+        String name = lowerCase.toString();
+
+        Node node = root;
+        for (int i = 0; i < name.length(); i++) {
+            node = node.addChild(name.charAt(i));
+        }
+        if (node.tag == -1) {
+            node.tag = tags.size();
+            tags.add(name);
+        }
+        return node.tag;
+    }
+
+    /**
+     * Returns the id of the longest tag starting at position start, or -1
+     */
+    public int match(CharSequence s, int start) {
+        int result = -1;
+        Node node = root;
+        for (int i = start; i < s.length(); i++) {
+            node = node.child(Character.toLowerCase(s.charAt(i)));
+            if (node == null) {
+                break;
+            }
+            if (node.tag != -1) {
+                result = node.tag;
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return tags.size();
+    }
+
+    /**
+     * The tag with its leading '@', in lower case
+     */
+    public String getTag(int id) {
+        return tags.get(id);
+    }
+
+    public String[] getTags() {
+        return tags.toArray(new String[tags.size()]);
+    }
+
+    public boolean isBuiltIn(int id) {
+        return id < Parser.TAGS.length;
+    }
+}
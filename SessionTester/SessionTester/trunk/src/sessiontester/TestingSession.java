@@ -10,59 +10,344 @@
  */
 package sessiontester;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Represents a Test Session. Also performs field validation.
- * 
+ *
+ * A parsed session keeps the EntryList it was built from. The tagged fields
+ * are joined from those entries, block by block, only when they are first
+ * read. Sessions loaded from disk have no entry list.
+ *
+ * Custom tags from the TagRegistry have no field of their own; their
+ * blocks go into extension fields named after the tag.
+ *
+ * A session from Persistor.loadHeader only holds the header fields; the
+ * rest are read from its file when one of them is first used.
  */
 public class TestingSession {
 
-    public String start = "";
-    public String end = "";
-    public String duration = "";
-    public String tester = "";
-    public String mission = "";
-    public String tasks = "";
-    public String data = "";
-    public String notes = "";
-    public String issues = "";
-    public String bugs = "";
-    public String environment = "";
-    public String area= "";
+    /**
+     * Accumulates the blocks of one field. The joined value is cached
+     * until the next append.
+     */
+    private static class FieldBuffer {
+
+        private StringBuilder builder;
+        private String value = "";
+
+        void append(String s) {
+            append(s, 0, s.length());
+        }
+
+        void append(CharSequence s, int start, int end) {
+            if (builder == null) {
+                builder = new StringBuilder(value);
+            }
+            builder.append(s, start, end).append('\n');
+            value = null;
+        }
+
+        String get() {
+            if (value == null) {
+                value = builder.toString();
+            }
+            return value;
+        }
+
+        void set(String s) {
+            builder = null;
+            value = s;
+        }
+    }
+
+    private String start = "";
+    private String end = "";
+    private String duration = "";
+    private String tester = "";
+    private String mission = "";
+    private final FieldBuffer tasks = new FieldBuffer();
+    private final FieldBuffer data = new FieldBuffer();
+    private final FieldBuffer notes = new FieldBuffer();
+    private final FieldBuffer issues = new FieldBuffer();
+    private final FieldBuffer bugs = new FieldBuffer();
+    private final FieldBuffer environment = new FieldBuffer();
+    private final FieldBuffer area = new FieldBuffer();
+    private final Map<String, FieldBuffer> extensions = new LinkedHashMap<String, FieldBuffer>();
+    private EntryList entries;
+    private boolean entriesJoined;
+    private Timeline timeline;
+    private File bodyFile;
 
     public TestingSession() {
     }
 
+    public String getStart() {
+        return start;
+    }
+
+    public void setStart(String start) {
+        this.start = start;
+    }
+
+    public String getEnd() {
+        return end;
+    }
+
+    public void setEnd(String end) {
+        this.end = end;
+    }
+
+    public String getDuration() {
+        return duration;
+    }
+
+    public void setDuration(String duration) {
+        this.duration = duration;
+    }
+
+    public String getTester() {
+        return tester;
+    }
+
+    public void setTester(String tester) {
+        this.tester = tester;
+    }
+
+    public String getMission() {
+        return mission;
+    }
+
+    public void setMission(String mission) {
+        this.mission = mission;
+    }
+
+    public String getTasks() {
+        loadBody();
+        return tasks.get();
+    }
+
+    public void setTasks(String tasks) {
+        loadBody();
+        this.tasks.set(tasks);
+    }
+
+    public String getData() {
+        loadBody();
+        return data.get();
+    }
+
+    public void setData(String data) {
+        loadBody();
+        this.data.set(data);
+    }
+
+    public String getNotes() {
+        loadBody();
+        return notes.get();
+    }
+
+    public void setNotes(String notes) {
+        loadBody();
+        this.notes.set(notes);
+    }
+
+    public String getIssues() {
+        loadBody();
+        return issues.get();
+    }
+
+    public void setIssues(String issues) {
+        loadBody();
+        this.issues.set(issues);
+    }
+
+    public String getBugs() {
+        loadBody();
+        return bugs.get();
+    }
+
+    public void setBugs(String bugs) {
+        loadBody();
+        this.bugs.set(bugs);
+    }
+
+    public String getEnvironment() {
+        loadBody();
+        return environment.get();
+    }
+
+    public void setEnvironment(String environment) {
+        loadBody();
+        this.environment.set(environment);
+    }
+
+    public String getArea() {
+        joinEntries();
+        return area.get();
+    }
+
+    public void setArea(String area) {
+        joinEntries();
+        this.area.set(area);
+    }
+
     void addBug(String s) {
-        bugs = add(bugs, s);
+        joinEntries();
+        bugs.append(s);
     }
 
     void addData(String s) {
-        data = add(data, s);
+        joinEntries();
+        data.append(s);
     }
 
     void addIssue(String s) {
-        issues = add(issues, s);
+        joinEntries();
+        issues.append(s);
     }
 
     void addNotes(String s) {
-        notes = add(notes, s);
+        joinEntries();
+        notes.append(s);
     }
 
     void addTask(String s) {
-        tasks = add(tasks, s);
+        joinEntries();
+        tasks.append(s);
     }
 
     void addEnvironment(String s) {
-        environment = add(environment, s);
+        joinEntries();
+        environment.append(s);
     }
 
     void addArea(String s) {
-        area = add(area, s);
+        joinEntries();
+        area.append(s);
     }
 
-    String add(String orig, String append) {
-        return orig + append + "\n";
+    /**
+     * Names of the extension fields, without the '@', in the order first seen
+     */
+    public Set<String> getExtensionNames() {
+        loadBody();
+        return Collections.unmodifiableSet(extensions.keySet());
     }
 
-    
+    public String getExtension(String name) {
+        loadBody();
+        FieldBuffer extension = extensions.get(name);
+        return (extension == null) ? "" : extension.get();
+    }
+
+    public void setExtension(String name, String value) {
+        loadBody();
+        extensionFor(name).set(value);
+    }
+
+    private FieldBuffer extensionFor(String name) {
+        FieldBuffer extension = extensions.get(name);
+        if (extension == null) {
+            extension = new FieldBuffer();
+            extensions.put(name, extension);
+        }
+        return extension;
+    }
+
+    /**
+     * The entries this session was parsed from, or null if it was loaded
+     */
+    public EntryList getEntries() {
+        return entries;
+    }
+
+    void setEntries(EntryList entries) {
+        this.entries = entries;
+        this.entriesJoined = false;
+    }
+
+    /**
+     * The @timestamp markers of the entries, or null if the session was
+     * saved without them. A loaded timeline keeps the entry indexes of the
+     * text it was parsed from.
+     */
+    public Timeline getTimeline() {
+        loadBody();
+        return timeline;
+    }
+
+    void setTimeline(Timeline timeline) {
+        loadBody();
+        this.timeline = timeline;
+    }
+
+    void setBodyFile(File bodyFile) {
+        this.bodyFile = bodyFile;
+    }
+
+    /**
+     * Loads the fields after the header if they are still on disk, then
+     * joins any parsed entries
+     */
+    private void loadBody() {
+        if (bodyFile != null) {
+            File file = bodyFile;
+            bodyFile = null;
+            try {
+                Persistor.loadBody(file, this);
+            } catch (IOException e) {
+                bodyFile = file;
+                throw new RuntimeException(e);
+            }
+        }
+        joinEntries();
+    }
+
+    private void joinEntries() {
+        if (entries == null || entriesJoined) {
+            return;
+        }
+        entriesJoined = true;
+
+        String source = entries.getSource();
+        for (int i = 0; i < entries.size(); i++) {
+            int tag = entries.getTag(i);
+            FieldBuffer field;
+            if (tag < Parser.TAGS.length) {
+                field = fieldFor(tag);
+            } else {
+                field = extensionFor(entries.getTagName(i).substring(1));
+            }
+            if (field != null) {
+                field.append(source, entries.getStart(i), entries.getEnd(i));
+            }
+        }
+    }
+
+    private FieldBuffer fieldFor(int tag) {
+        switch (tag) {
+            case Parser.AREA:
+                return area;
+            case Parser.BUG:
+                return bugs;
+            case Parser.DATA:
+                return data;
+            case Parser.ENVIRONMENT:
+                return environment;
+            case Parser.ISSUE:
+                return issues;
+            case Parser.NOTES:
+                return notes;
+            case Parser.TASK:
+                return tasks;
+            default:
+                return null;
+        }
+    }
 }
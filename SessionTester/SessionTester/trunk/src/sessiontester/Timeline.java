@@ -0,0 +1,142 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+/**
+ * The @timestamp markers of a session, sorted by time.
+ *
+ * Each point pairs the epoch millis of a marker with the index of its
+ * @timestamp entry in the session's EntryList. The entries that follow a
+ * marker, up to the next one, are what happened at that time. Lookups by
+ * time are binary searches.
+ */
+public class Timeline {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private int size;
+    private long[] millis = new long[INITIAL_CAPACITY];
+    private int[] entryIndexes = new int[INITIAL_CAPACITY];
+    private boolean sorted = true;
+
+    public Timeline() {
+    }
+
+    void add(long time, int entryIndex) {
+        if (size == millis.length) {
+            long[] newMillis = new long[size * 2];
+            int[] newEntryIndexes = new int[size * 2];
+            System.arraycopy(millis, 0, newMillis, 0, size);
+            System.arraycopy(entryIndexes, 0, newEntryIndexes, 0, size);
+            millis = newMillis;
+            entryIndexes = newEntryIndexes;
+        }
+        if (size > 0 && time < millis[size - 1]) {
+            sorted = false;
+        }
+        millis[size] = time;
+        entryIndexes[size] = entryIndex;
+        size++;
+    }
+
+    Timeline copy() {
+        Timeline copy = new Timeline();
+        for (int i = 0; i < size(); i++) {
+            copy.add(getMillis(i), getEntryIndex(i));
+        }
+        return copy;
+    }
+
+    /**
+     * Markers are normally typed in order; sort only if someone edited one.
+     * The merge sort keeps equal times in entry order.
+     */
+    private void ensureSorted() {
+        if (sorted) {
+            return;
+        }
+        mergeSort(millis, entryIndexes, new long[size], new int[size], 0, size);
+        sorted = true;
+    }
+
+    private static void mergeSort(long[] keys, int[] values, long[] keyBuffer, int[] valueBuffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(keys, values, keyBuffer, valueBuffer, from, mid);
+        mergeSort(keys, values, keyBuffer, valueBuffer, mid, to);
+
+        System.arraycopy(keys, from, keyBuffer, from, to - from);
+        System.arraycopy(values, from, valueBuffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right == to || (left < mid && keyBuffer[left] <= keyBuffer[right])) {
+                keys[i] = keyBuffer[left];
+                values[i] = valueBuffer[left++];
+            } else {
+                keys[i] = keyBuffer[right];
+                values[i] = valueBuffer[right++];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getMillis(int index) {
+        ensureSorted();
+        return millis[index];
+    }
+
+    public int getEntryIndex(int index) {
+        ensureSorted();
+        return entryIndexes[index];
+    }
+
+    /**
+     * Position of the first marker at or after time; size() if there is none
+     */
+    public int indexAtOrAfter(long time) {
+        ensureSorted();
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (millis[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Position of the last marker at or before time; -1 if there is none
+     */
+    public int indexAtOrBefore(long time) {
+        ensureSorted();
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (millis[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+}
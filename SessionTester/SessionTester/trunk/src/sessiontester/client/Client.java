@@ -36,6 +36,7 @@ import java.util.Date;
 import javax.swing.JComboBox;
 import javax.swing.event.PopupMenuEvent;
 import javax.swing.event.PopupMenuListener;
+import javax.swing.text.Document;
 
 /**
  * Application client
@@ -102,6 +103,10 @@ public class Client extends javax.swing.JFrame {
         return jEntryTextArea.getText();
     }
 
+    public Document getEntryDocument() {
+        return jEntryTextArea.getDocument();
+    }
+
     public Client(Configuration configuration) throws Exception {
         this.configuration = configuration;
         UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -175,6 +180,10 @@ public class Client extends javax.swing.JFrame {
         jEntryTextArea.setText(resourceMap.getString("entry.initial.text"));
     }
 
+    public void setEntryText(String text) {
+        jEntryTextArea.setText(text);
+    }
+
     public void showError(String title, String message) {
         JOptionPane.showMessageDialog(this, title, message, JOptionPane.ERROR_MESSAGE);
     }
@@ -280,6 +289,7 @@ public class Client extends javax.swing.JFrame {
         jExitMenuItem = new javax.swing.JMenuItem();
         jReportMenu = new javax.swing.JMenu();
         jGenerateWebReportItem = new javax.swing.JMenuItem();
+        jSearchMenuItem = new javax.swing.JMenuItem();
         jHelpMenu = new javax.swing.JMenu();
         jCheatSheetMenuItem = new javax.swing.JMenuItem();
         jHelpMenuItem = new javax.swing.JMenuItem();
@@ -514,6 +524,16 @@ public class Client extends javax.swing.JFrame {
         });
         jReportMenu.add(jGenerateWebReportItem);
 
+        jSearchMenuItem.setMnemonic('s');
+        jSearchMenuItem.setText(bundle.getString("jSearchMenuItem.text")); // NOI18N
+        jSearchMenuItem.setName("jSearchMenuItem"); // NOI18N
+        jSearchMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                jSearchMenuItemActionPerformed(evt);
+            }
+        });
+        jReportMenu.add(jSearchMenuItem);
+
         jMenuBar.add(jReportMenu);
 
         jHelpMenu.setMnemonic('H');
@@ -715,6 +735,10 @@ private void jSaveMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN
     saveTestingSession();
 }//GEN-LAST:event_jSaveMenuItemActionPerformed
 
+private void jSearchMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jSearchMenuItemActionPerformed
+    controller.showSearchDialog();
+}//GEN-LAST:event_jSearchMenuItemActionPerformed
+
 
     private void openBrowserToResource(String resourceFileName) {
         try {
@@ -789,6 +813,7 @@ private void jSaveMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN
     private javax.swing.JButton jSaveButton;
     private javax.swing.JMenuItem jSaveMenuItem;
     private javax.swing.JScrollPane jScrollPane3;
+    private javax.swing.JMenuItem jSearchMenuItem;
     private javax.swing.JSeparator jSeparator1;
     private javax.swing.JPanel jSessionPanel;
     private javax.swing.JButton jStartButton;
@@ -12,14 +12,24 @@ package sessiontester.client;
 
 import java.awt.Dialog.ModalExclusionType;
 import java.io.File;
+import java.io.IOException;
 import java.util.Date;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JDialog;
 import org.jdesktop.application.ResourceMap;
+import sessiontester.Autosave;
+import sessiontester.EditJournal;
 import sessiontester.FileUtils;
-import sessiontester.Parser;
-import sessiontester.Persistor;
+import sessiontester.IncrementalParser;
 import sessiontester.PlatformUtils;
+import sessiontester.PreferencesUtils;
+import sessiontester.SearchIndex;
+import sessiontester.SessionCatalog;
+import sessiontester.SessionCompactor;
+import sessiontester.SessionWatcher;
+import sessiontester.SessionWriter;
+import sessiontester.TagRegistry;
 import sessiontester.TestingSession;
 import sessiontester.publisher.WebPublisher;
 
@@ -45,8 +55,18 @@ public class ClientController {
     private boolean timerDebugFlag;
     private Client view;
     private Date startDate;
+    private IncrementalParser entryParser;
+    private SessionWriter sessionWriter;
+    private SaveTracker saveTracker;
+    private EditJournal journal;
+    private File journalFile = new File(FileUtils.SESSION_TESTER_DIR, "session.journal");
+    private Autosave autosave;
+    private String tester;
+    private String mission;
     private static final Logger logger = Logger.getLogger(ClientController.class.getName());
     private static int FIELD_MAX_LENGTH = 200;
+    private static long JOURNAL_COMMIT_INTERVAL = 2000;
+    private static long AUTOSAVE_IDLE_GAP = 5000;
 
     public ClientController(Client view) {
         this.view = view;
@@ -57,9 +77,51 @@ public class ClientController {
             view.initializeMacSpecificPlatformTweaks();
         }
         view.initializeHotKeys();
-        view.setTags(Parser.TAGS);
+        TagRegistry tagRegistry = TagRegistry.withCustomTags(new PreferencesUtils().GetCustomTags());
+        view.setTags(tagRegistry.getTags());
+        entryParser = new IncrementalParser(view.getEntryDocument(), tagRegistry);
+        FileUtils.SESSION_TESTER_DIR.mkdirs();
+        saveTracker = new SaveTracker() {
+
+            @Override
+            protected void announce(File file) {
+                systemTrayManager.displayMessage(resourceMap.getString("MainForm.title"), resourceMap.getString("SysTray.SessionSaved") + "\n" + file);
+            }
+
+            @Override
+            protected void saveFailed(File file, Exception e) {
+                logger.log(Level.SEVERE, "Exception occurred saving " + file, e);
+                ClientController.this.view.showIOError();
+            }
+
+            @Override
+            protected void ended() {
+                journal.end();
+            }
+        };
+        sessionWriter = new SessionWriter(saveTracker);
+        journal = new EditJournal(journalFile, view.getEntryDocument(), JOURNAL_COMMIT_INTERVAL);
+        int autosaveInterval = new PreferencesUtils().GetAutosaveInterval();
+        if (autosaveInterval > 0) {
+            autosave = new Autosave(view.getEntryDocument(), autosaveInterval * 1000L, AUTOSAVE_IDLE_GAP, new Runnable() {
+
+                @Override
+                public void run() {
+                    autosaveTestingSession();
+                }
+            });
+        }
         view.resetForm();
         setState(STATE.NoSession);
+        recoverInterruptedSession();
+        PreferencesUtils preferences = new PreferencesUtils();
+        if (preferences.GetCompressAfterDays() > 0) {
+            SessionCompactor compactor = new SessionCompactor(FileUtils.SESSION_TESTER_DIR, preferences.GetCompressAfterDays());
+            compactor.setPack(preferences.GetPackSessions());
+            compactor.start();
+        }
+        //Picks up sessions copied into the archive by hand or by sync tools
+        new SessionWatcher(FileUtils.SESSION_TESTER_DIR).start();
     }
 
     private void setState(STATE state) {
@@ -80,16 +142,15 @@ public class ClientController {
     }
 
     private TestingSession buildTestSession() {
-        Parser parser = new Parser();
         Date endDate = new Date();
-        TestingSession session = parser.parse(view.getEntryText());
-        session.mission = maxLength(view.getNewSessionDialog().getMissionText(), FIELD_MAX_LENGTH);
-        session.start = startDate.toString();
-        session.end = endDate.toString();
-        session.tester = maxLength(view.getNewSessionDialog().getTesterText(), FIELD_MAX_LENGTH);
+        TestingSession session = entryParser.buildTestingSession();
+        session.setMission(mission);
+        session.setStart(startDate.toString());
+        session.setEnd(endDate.toString());
+        session.setTester(tester);
         long difference = endDate.getTime() - startDate.getTime();
         int minutes = (int) (difference / 1000 / 60);
-        session.duration = minutes + " min(s)";
+        session.setDuration(minutes + " min(s)");
         return session;
     }
 
@@ -101,19 +162,36 @@ public class ClientController {
         return input;
     }
 
-    private void saveTestingSession() throws Exception {
-        Persistor.save(testingSessionFile, buildTestSession());
-        String fileName = "\n" + testingSessionFile.toString();
-        systemTrayManager.displayMessage(resourceMap.getString("MainForm.title"), resourceMap.getString("SysTray.SessionSaved") + fileName);
+    /**
+     * Snapshots the session on the event dispatch thread and leaves the
+     * writing to the session writer, which reports back when it is done
+     */
+    private TestingSession saveTestingSession() {
+        TestingSession snapshot = buildTestSession();
+        saveTracker.userSaved(snapshot);
+        if (autosave != null) {
+            autosave.saved();
+        }
+        sessionWriter.save(testingSessionFile, snapshot);
+        return snapshot;
+    }
+
+    private void autosaveTestingSession() {
+        TestingSession snapshot = buildTestSession();
+        saveTracker.autosaved(snapshot);
+        sessionWriter.save(testingSessionFile, snapshot);
     }
 
-    public void saveClicked() throws Exception{
+    public void saveClicked() {
         saveTestingSession();
     }
 
-    public void stopClicked() throws Exception {
+    public void stopClicked() {
         reminder.stop();
-        saveTestingSession();
+        if (autosave != null) {
+            autosave.stop();
+        }
+        saveTracker.stopped(saveTestingSession());
         setState(STATE.SessionEnded);
     }
 
@@ -129,7 +207,6 @@ public class ClientController {
     public void startNewSessionDialogCompleted() {
         NewSessionDialog dialogView = view.getNewSessionDialog();
         
-        reminder = new Reminder(this, view.getProgressBar(), systemTrayManager, view.getTimeStatusLabel(), resourceMap.getString("MainForm.title"));
         //Validate entry fields
         if (dialogView.getTesterText().trim().equals("") || dialogView.getMissionText().trim().equals("")) {
             dialogView.showError(resourceMap.getString("validation.error.text"), resourceMap.getString("validation.error.title"));
@@ -138,37 +215,82 @@ public class ClientController {
             //Commence session
             testingSessionFile = FileUtils.buildTestingSessionFileFromCurrentTime();
             startDate = new Date(); //Track start time for saving later
-            view.setStatusBarLabels(maxLength(dialogView.getMissionText(), FIELD_MAX_LENGTH), maxLength(dialogView.getTesterText(), FIELD_MAX_LENGTH));
-
-            int sessionLength;
-            int missionReminderInterval;
-            int sessionEndReminderInterval;
-
-            //Sets timers to hardcoded, short settings if debug is set
-            if (timerDebugFlag) {
-                logger.info("SessionLength = 4; MissionReminderInterval = 2; SessionEndReminderInterval = 2");
-                sessionLength = 4;
-                missionReminderInterval = 2;
-                sessionEndReminderInterval = 2;
-
-            } else {
-                sessionLength = dialogView.getSessionLength();
-                missionReminderInterval = dialogView.getMissionReminderInterval();
-                sessionEndReminderInterval = dialogView.getSessionEndReminderInterval();
-            }
+            tester = maxLength(dialogView.getTesterText(), FIELD_MAX_LENGTH);
+            mission = maxLength(dialogView.getMissionText(), FIELD_MAX_LENGTH);
+            view.setStatusBarLabels(mission, tester);
+            saveTracker.started();
+            journal.begin(testingSessionFile, startDate, tester, mission);
+            startAutosave();
+            startReminder(dialogView);
+            setState(STATE.SessionStarted);
+        }
 
-            if (dialogView.isMissionReminderChecked()) {
-                reminder.setMissionReminder(missionReminderInterval, dialogView.getMissionText());
-            }
-            if (dialogView.isSessionEndReminderChecked()) {
-                reminder.setSessionEndReminder(sessionEndReminderInterval, resourceMap.getString("SysTray.SessionEndReminder"));
-            }
+    }
 
-            reminder.setSessionLength(sessionLength, resourceMap.getString("SysTray.SessionEnd"));
-            reminder.start();
-            setState(STATE.SessionStarted);
+    /**
+     * Restores a session that was still running when the application died,
+     * from the edit journal. Its timer starts again from the beginning.
+     */
+    private void recoverInterruptedSession() {
+        EditJournal.Recovery recovery;
+        try {
+            recovery = EditJournal.recover(journalFile);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not read the edit journal", e);
+            return;
+        }
+        if (recovery == null) {
+            return;
         }
 
+        testingSessionFile = recovery.getSessionFile();
+        startDate = recovery.getStart();
+        tester = recovery.getTester();
+        mission = recovery.getMission();
+        view.setEntryText(recovery.getText());
+        view.setStatusBarLabels(mission, tester);
+        journal.begin(testingSessionFile, startDate, tester, mission);
+        startAutosave();
+        startReminder(view.getNewSessionDialog());
+        setState(STATE.SessionStarted);
+        systemTrayManager.displayMessage(resourceMap.getString("MainForm.title"), resourceMap.getString("SysTray.SessionRecovered"));
+    }
+
+    private void startAutosave() {
+        if (autosave != null) {
+            autosave.start();
+        }
+    }
+
+    private void startReminder(NewSessionDialog dialogView) {
+        reminder = new Reminder(this, view.getProgressBar(), systemTrayManager, view.getTimeStatusLabel(), resourceMap.getString("MainForm.title"));
+
+        int sessionLength;
+        int missionReminderInterval;
+        int sessionEndReminderInterval;
+
+        //Sets timers to hardcoded, short settings if debug is set
+        if (timerDebugFlag) {
+            logger.info("SessionLength = 4; MissionReminderInterval = 2; SessionEndReminderInterval = 2");
+            sessionLength = 4;
+            missionReminderInterval = 2;
+            sessionEndReminderInterval = 2;
+
+        } else {
+            sessionLength = dialogView.getSessionLength();
+            missionReminderInterval = dialogView.getMissionReminderInterval();
+            sessionEndReminderInterval = dialogView.getSessionEndReminderInterval();
+        }
+
+        if (dialogView.isMissionReminderChecked()) {
+            reminder.setMissionReminder(missionReminderInterval, mission);
+        }
+        if (dialogView.isSessionEndReminderChecked()) {
+            reminder.setSessionEndReminder(sessionEndReminderInterval, resourceMap.getString("SysTray.SessionEndReminder"));
+        }
+
+        reminder.setSessionLength(sessionLength, resourceMap.getString("SysTray.SessionEnd"));
+        reminder.start();
     }
 
     public void extendSessionClicked() {
@@ -201,6 +323,19 @@ public class ClientController {
     }
 
     public void ExitApplication() {
+        try {
+            //Let the last save reach the disk
+            sessionWriter.shutdown(10 * 1000);
+            //This is the event dispatch thread, so the last reports would never run
+            saveTracker.deliver();
+            journal.close();
+            SearchIndex.flushAll();
+            SessionCatalog.flushAll();
+        } catch (InterruptedException e) {
+            logger.log(Level.WARNING, "Interrupted waiting for sessions to be saved", e);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not write the session catalog or search index", e);
+        }
         System.exit(0);
     }
 
@@ -217,4 +352,9 @@ public class ClientController {
         JDialog dlgPreferences = new PreferencesDialog(view);
         dlgPreferences.setVisible(true);
     }
+
+    public void showSearchDialog() {
+        JDialog dlgSearch = new SearchDialog(view, FileUtils.SESSION_TESTER_DIR);
+        dlgSearch.setVisible(true);
+    }
 }
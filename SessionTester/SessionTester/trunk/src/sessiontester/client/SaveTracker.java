@@ -0,0 +1,141 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester.client;
+
+import java.awt.EventQueue;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import sessiontester.SessionWriter;
+import sessiontester.TestingSession;
+
+/**
+ * Receives what the SessionWriter reports from its thread and passes it
+ * on to the event dispatch thread, where ClientController tells the user.
+ * Only saves the user asked for are announced, not autosaves. It also
+ * notices when the snapshot taken by Stop is on disk, so the session no
+ * longer needs its edit journal.
+ *
+ * Except for saved and failed, which the writer calls, everything here is
+ * confined to the event dispatch thread.
+ */
+abstract class SaveTracker implements SessionWriter.Listener {
+
+    //The snapshot to announce once it has been saved
+    private TestingSession announced;
+    //The snapshot taken by Stop, until it has been saved
+    private TestingSession last;
+    //Guarded by itself
+    private final List<Runnable> reports = new ArrayList<Runnable>();
+    private final Runnable deliver = new Runnable() {
+
+        @Override
+        public void run() {
+            deliver();
+        }
+    };
+
+    /**
+     * The user asked for snapshot to be saved
+     */
+    void userSaved(TestingSession snapshot) {
+        announced = snapshot;
+    }
+
+    /**
+     * snapshot is an autosave. If it replaces a save the user asked for
+     * that is still waiting, it is announced instead.
+     */
+    void autosaved(TestingSession snapshot) {
+        if (announced != null) {
+            announced = snapshot;
+        }
+    }
+
+    /**
+     * A new session started, so a Stop snapshot of the previous one still
+     * being written no longer ends anything
+     */
+    void started() {
+        last = null;
+    }
+
+    /**
+     * The session was stopped and snapshot is its last save
+     */
+    void stopped(TestingSession snapshot) {
+        last = snapshot;
+    }
+
+    @Override
+    public void saved(final File file, final TestingSession snapshot) {
+        post(new Runnable() {
+
+            @Override
+            public void run() {
+                if (snapshot == announced) {
+                    announced = null;
+                    announce(file);
+                }
+                if (snapshot == last) {
+                    last = null;
+                    ended();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void failed(final File file, final Exception e) {
+        post(new Runnable() {
+
+            @Override
+            public void run() {
+                saveFailed(file, e);
+            }
+        });
+    }
+
+    /**
+     * Runs the reports the writer has made so far. Called on exit, once
+     * the writer has stopped, as the event dispatch thread will not get
+     * to them.
+     */
+    void deliver() {
+        List<Runnable> pending;
+        synchronized (reports) {
+            pending = new ArrayList<Runnable>(reports);
+            reports.clear();
+        }
+        for (Runnable report : pending) {
+            report.run();
+        }
+    }
+
+    private void post(Runnable report) {
+        synchronized (reports) {
+            reports.add(report);
+        }
+        EventQueue.invokeLater(deliver);
+    }
+
+    /**
+     * Tells the user file has been saved
+     */
+    protected abstract void announce(File file);
+
+    protected abstract void saveFailed(File file, Exception e);
+
+    /**
+     * Called once the snapshot taken by Stop has been saved
+     */
+    protected abstract void ended();
+}
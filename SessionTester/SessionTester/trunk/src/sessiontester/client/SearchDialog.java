@@ -0,0 +1,234 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester.client;
+
+import java.awt.BorderLayout;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.BorderFactory;
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
+import javax.swing.JTable;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingWorker;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.AbstractTableModel;
+import org.jdesktop.application.ResourceMap;
+import sessiontester.Persistor;
+import sessiontester.SearchIndex;
+import sessiontester.SessionCatalog;
+import sessiontester.TestingSession;
+
+/**
+ * Searches the text of past sessions through the SearchIndex of the
+ * session directory and shows the session picked from the results.
+ *
+ * Opening the index and searching run on a background thread, since the
+ * first search of a large archive has to index it.
+ */
+public class SearchDialog extends JDialog {
+
+    private static final int MAX_RESULTS = 500;
+    private static final Logger logger = Logger.getLogger(SearchDialog.class.getName());
+    private final ResourceMap resourceMap = org.jdesktop.application.Application.getInstance().getContext().getResourceMap(SearchDialog.class);
+    private final File root;
+    private final ResultsModel results = new ResultsModel();
+    private final JTextField queryField = new JTextField(30);
+    private final JButton searchButton = new JButton();
+    private final JLabel statusLabel = new JLabel(" ");
+    private final JTable resultsTable = new JTable(results);
+    private final JTextArea sessionText = new JTextArea(12, 60);
+
+    private class ResultsModel extends AbstractTableModel {
+
+        private List<SessionCatalog.Entry> entries = new ArrayList<SessionCatalog.Entry>();
+        private final DateFormat format = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT);
+
+        void setEntries(List<SessionCatalog.Entry> entries) {
+            this.entries = entries;
+            fireTableDataChanged();
+        }
+
+        SessionCatalog.Entry getEntry(int row) {
+            return entries.get(row);
+        }
+
+        @Override
+        public int getRowCount() {
+            return entries.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 4;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            String[] keys = {"column.date", "column.tester", "column.mission", "column.area"};
+            return resourceMap.getString(keys[column]);
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            SessionCatalog.Entry entry = entries.get(row);
+            switch (column) {
+                case 0: return format.format(entry.getDate());
+                case 1: return entry.getTester();
+                case 2: return entry.getMission();
+                default: return entry.getArea();
+            }
+        }
+    }
+
+    public SearchDialog(Frame parent, File root) {
+        super(parent);
+        this.root = root;
+        initComponents();
+    }
+
+    private void initComponents() {
+        setName("searchDialog"); // NOI18N
+        setTitle(resourceMap.getString("title"));
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        searchButton.setText(resourceMap.getString("jSearchButton.text"));
+        ActionListener search = new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                search();
+            }
+        };
+        searchButton.addActionListener(search);
+        queryField.addActionListener(search);
+
+        JPanel queryPanel = new JPanel();
+        queryPanel.setLayout(new BoxLayout(queryPanel, BoxLayout.X_AXIS));
+        queryPanel.add(new JLabel(resourceMap.getString("jQueryLabel.text")));
+        queryPanel.add(Box.createHorizontalStrut(6));
+        queryPanel.add(queryField);
+        queryPanel.add(Box.createHorizontalStrut(6));
+        queryPanel.add(searchButton);
+
+        JPanel top = new JPanel(new BorderLayout(0, 4));
+        top.add(queryPanel, BorderLayout.NORTH);
+        top.add(new JLabel(resourceMap.getString("jQueryHint.text")), BorderLayout.SOUTH);
+
+        resultsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        resultsTable.getSelectionModel().addListSelectionListener(new ListSelectionListener() {
+
+            @Override
+            public void valueChanged(ListSelectionEvent e) {
+                if (!e.getValueIsAdjusting()) {
+                    showSelectedSession();
+                }
+            }
+        });
+        sessionText.setEditable(false);
+        sessionText.setLineWrap(true);
+        sessionText.setWrapStyleWord(true);
+
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(resultsTable), new JScrollPane(sessionText));
+        split.setResizeWeight(0.5);
+
+        JPanel content = new JPanel(new BorderLayout(0, 6));
+        content.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        content.add(top, BorderLayout.NORTH);
+        content.add(split, BorderLayout.CENTER);
+        content.add(statusLabel, BorderLayout.SOUTH);
+        setContentPane(content);
+        getRootPane().setDefaultButton(searchButton);
+        pack();
+        setLocationRelativeTo(getParent());
+    }
+
+    private void search() {
+        final String query = queryField.getText();
+        searchButton.setEnabled(false);
+        statusLabel.setText(resourceMap.getString("status.indexing"));
+
+        new SwingWorker<List<SessionCatalog.Entry>, Void>() {
+
+            private long elapsed;
+
+            @Override
+            protected List<SessionCatalog.Entry> doInBackground() throws Exception {
+                SearchIndex index = SearchIndex.open(root);
+                long started = System.currentTimeMillis();
+                List<SessionCatalog.Entry> found = index.search(query, MAX_RESULTS);
+                elapsed = System.currentTimeMillis() - started;
+                return found;
+            }
+
+            @Override
+            protected void done() {
+                searchButton.setEnabled(true);
+                try {
+                    List<SessionCatalog.Entry> found = get();
+                    results.setEntries(found);
+                    sessionText.setText("");
+                    String status = (found.size() < MAX_RESULTS) ? "status.results" : "status.limited";
+                    statusLabel.setText(resourceMap.getString(status, found.size(), elapsed));
+                } catch (Exception e) {
+                    logger.log(Level.SEVERE, "Exception occurred searching sessions", e);
+                    statusLabel.setText(resourceMap.getString("status.error", e.getMessage()));
+                }
+            }
+        }.execute();
+    }
+
+    private void showSelectedSession() {
+        int row = resultsTable.getSelectedRow();
+        if (row == -1) {
+            sessionText.setText("");
+            return;
+        }
+        SessionCatalog.Entry entry = results.getEntry(row);
+        try {
+            TestingSession session = Persistor.load(entry.getFile());
+            StringBuilder text = new StringBuilder();
+            appendField(text, "Mission", session.getMission());
+            appendField(text, "Task Breakdown", session.getTasks());
+            appendField(text, "Data Files", session.getData());
+            appendField(text, "Test Notes", session.getNotes());
+            appendField(text, "Issues", session.getIssues());
+            appendField(text, "Bugs", session.getBugs());
+            sessionText.setText(text.toString());
+            sessionText.setCaretPosition(0);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Exception occurred loading " + entry.getFile(), e);
+            sessionText.setText(resourceMap.getString("status.error", e.getMessage()));
+        }
+    }
+
+    private void appendField(StringBuilder text, String name, String value) {
+        if (value.length() > 0) {
+            text.append(name).append(":\n").append(value.trim()).append("\n\n");
+        }
+    }
+}
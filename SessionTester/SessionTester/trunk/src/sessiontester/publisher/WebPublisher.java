@@ -11,13 +11,12 @@
 package sessiontester.publisher;
 
 import java.io.File;
+import java.io.FileFilter;
 import java.io.IOException;
 import java.util.Date;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPathExpressionException;
-import org.xml.sax.SAXException;
 import sessiontester.FileUtils;
 import sessiontester.Persistor;
+import sessiontester.SessionPack;
 import sessiontester.TestingSession;
 
 /**
@@ -28,11 +27,21 @@ public class WebPublisher {
 
     private static String HEADER = "<HTML><BODY><H1>Session Tester Report</H1>";
     private static String FOOTER = "</BODY></HTML>";
+    //Skips the temp files of saves in progress or interrupted by a crash
+    private static FileFilter SESSION_FILES = new FileFilter() {
+
+        @Override
+        public boolean accept(File file) {
+            String name = file.getName();
+            return file.isDirectory() || name.endsWith(".xml") || name.endsWith(".xml" + Persistor.COMPRESSED_SUFFIX)
+                    || SessionPack.isPack(file);
+        }
+    };
 
     public WebPublisher() {
     }
 
-    public void publishTo(File publishDir) throws IOException, ParserConfigurationException, SAXException, XPathExpressionException {
+    public void publishTo(File publishDir) throws IOException {
         if (!publishDir.isDirectory()) {
             throw new IOException("A directory was specified instead of a file.");
         }
@@ -45,8 +54,8 @@ public class WebPublisher {
         scanDirectory(FileUtils.SESSION_TESTER_DIR, publishDir, new DirectoryLevel(), new BreadCrumb());
     }
 
-    private void scanDirectory(File root, File publishDir, DirectoryLevel level, BreadCrumb history) throws IOException, ParserConfigurationException, SAXException, XPathExpressionException {
-        File[] filesOrDirs = root.listFiles();
+    private void scanDirectory(final File root, final File publishDir, DirectoryLevel level, BreadCrumb history) throws IOException {
+        File[] filesOrDirs = root.listFiles(SESSION_FILES);
 
         buildIndexPage(root, publishDir, level, history);
 
@@ -56,15 +65,33 @@ public class WebPublisher {
                 if (nextLevel.hasMoreLevels()) {
                     scanDirectory(fileOrDir, publishDir, level.nextLevel(), history.add(fileOrDir.getName()));
                 }
+            } else if (SessionPack.isPack(fileOrDir)) {
+                SessionPack.open(fileOrDir).loadAll(new SessionPack.Visitor() {
+
+                    @Override
+                    public void visit(String name, TestingSession session) throws IOException {
+                        if (!isUnpacked(root, name)) {
+                            buildReport(name, session, publishDir);
+                        }
+                    }
+                });
             } else {
-                buildReport(fileOrDir, publishDir);
+                buildReport(fileOrDir.getName(), Persistor.load(fileOrDir), publishDir);
             }
         }
 
     }
 
-    private String buildReportFilename(File file) {
-        return file.getName().split(".xml")[0] + ".html";
+    /**
+     * Whether a packed session was saved again after it was packed, in
+     * which case the file supersedes the packed copy
+     */
+    private boolean isUnpacked(File directory, String name) {
+        return new File(directory, name).exists() || new File(directory, name + Persistor.COMPRESSED_SUFFIX).exists();
+    }
+
+    private String buildReportFilename(String name) {
+        return name.split(".xml")[0] + ".html";
     }
 
     /**
@@ -81,7 +108,15 @@ public class WebPublisher {
         DirectoryLevel nextLevel = level.nextLevel();
         pageContents.append("<h1>").append(nextLevel.getLabel()).append("</h1>");
 
-        for (File file : directoryToIndex.listFiles()) {
+        for (File file : directoryToIndex.listFiles(SESSION_FILES)) {
+            if (SessionPack.isPack(file)) {
+                for (String name : SessionPack.open(file).getNames()) {
+                    if (!isUnpacked(directoryToIndex, name)) {
+                        appendLink(pageContents, buildReportFilename(name), name);
+                    }
+                }
+                continue;
+            }
             StringBuffer link = new StringBuffer();
             if (nextLevel.hasMoreLevels()) {
                 link.append("index_");
@@ -92,47 +127,53 @@ public class WebPublisher {
                 link.append(file.getName());
                 link.append(".html");
             } else {
-                link.append(buildReportFilename(file));
+                link.append(buildReportFilename(file.getName()));
             }
-            pageContents.append("<a href=\"").append(link).append("\">");
-            pageContents.append(file.getName());
-            pageContents.append("</a>");
-            pageContents.append("<br/>");
+            appendLink(pageContents, link.toString(), file.getName());
         }
 
         pageContents.append(FOOTER);
         FileUtils.writeToFile(outputFile, pageContents.toString());
     }
 
+    private void appendLink(StringBuffer pageContents, String link, String label) {
+        pageContents.append("<a href=\"").append(link).append("\">");
+        pageContents.append(label);
+        pageContents.append("</a>");
+        pageContents.append("<br/>");
+    }
+
     private void appendField(StringBuffer pageContents, String fieldName, String fieldValue) {
-        pageContents.append("<h2>").append(fieldName).append("</h2>");
+        pageContents.append("<h2>").append(escape(fieldName)).append("</h2>");
         pageContents.append("<p>").append(fieldValue).append("</p>");
     }
 
-    private void buildReport(File inputFile, File publishDir) throws IOException, ParserConfigurationException, SAXException, XPathExpressionException {
-        TestingSession session = Persistor.load(inputFile);
+    void buildReport(String name, TestingSession session, File publishDir) throws IOException {
         StringBuffer pageContents = new StringBuffer();
         pageContents.append(HEADER);
 
-        pageContents.append("<h1>Testing Session - ").append(inputFile.getName()).
+        pageContents.append("<h1>Testing Session - ").append(name).
                 append("</h1>");
 
-        appendField(pageContents, "Start", wrapInPreTag(session.start));
-        appendField(pageContents, "End", wrapInPreTag(session.end));
-        appendField(pageContents, "Duration", wrapInPreTag(session.duration));
-        appendField(pageContents, "Tester", wrapInPreTag(session.tester));
-        appendField(pageContents, "Mission", wrapInPreTag(session.mission));
-        appendField(pageContents, "Task Breakdown", wrapInPreTag(session.tasks));
-        appendField(pageContents, "Data Files", wrapInPreTag(session.data));
-        appendField(pageContents, "Environment", wrapInPreTag(session.environment));
-        appendField(pageContents, "Area", wrapInPreTag(session.area));
-        appendField(pageContents, "Test Notes", wrapInPreTag(session.notes));
-        appendField(pageContents, "Issues", wrapInPreTag(session.issues));
-        appendField(pageContents, "Bugs", wrapInPreTag(session.bugs));
+        appendField(pageContents, "Start", wrapInPreTag(session.getStart()));
+        appendField(pageContents, "End", wrapInPreTag(session.getEnd()));
+        appendField(pageContents, "Duration", wrapInPreTag(session.getDuration()));
+        appendField(pageContents, "Tester", wrapInPreTag(session.getTester()));
+        appendField(pageContents, "Mission", wrapInPreTag(session.getMission()));
+        appendField(pageContents, "Task Breakdown", wrapInPreTag(session.getTasks()));
+        appendField(pageContents, "Data Files", wrapInPreTag(session.getData()));
+        appendField(pageContents, "Environment", wrapInPreTag(session.getEnvironment()));
+        appendField(pageContents, "Area", wrapInPreTag(session.getArea()));
+        appendField(pageContents, "Test Notes", wrapInPreTag(session.getNotes()));
+        appendField(pageContents, "Issues", wrapInPreTag(session.getIssues()));
+        appendField(pageContents, "Bugs", wrapInPreTag(session.getBugs()));
+        for (String extension : session.getExtensionNames()) {
+            appendField(pageContents, extension, wrapInPreTag(session.getExtension(extension)));
+        }
 
         pageContents.append(FOOTER);
 
-        File outputFile = new File(publishDir, buildReportFilename(inputFile));
+        File outputFile = new File(publishDir, buildReportFilename(name));
         FileUtils.writeToFile(outputFile, pageContents.toString());
     }
 
@@ -141,6 +182,25 @@ public class WebPublisher {
         return wrapInTag(content,"pre");
     }
 
+    /**
+     * Custom tag names come from the preferences, so markup in them is
+     * shown rather than rendered
+     */
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&': escaped.append("&amp;"); break;
+                case '<': escaped.append("&lt;"); break;
+                case '>': escaped.append("&gt;"); break;
+                case '"': escaped.append("&quot;"); break;
+                default: escaped.append(c); break;
+            }
+        }
+        return escaped.toString();
+    }
+
     private String wrapInTag(String content, String tag)
     {
         return "<"+ tag +">" + content + "</"+ tag + ">";
@@ -0,0 +1,115 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.awt.EventQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.PlainDocument;
+import junit.framework.TestCase;
+
+public class AutosaveTest extends TestCase {
+
+    private final PlainDocument document = new PlainDocument();
+    private final AtomicInteger saves = new AtomicInteger();
+    private Autosave autosave;
+
+    private void start(final long interval, final long idleGap) throws Exception {
+        EventQueue.invokeAndWait(new Runnable() {
+
+            @Override
+            public void run() {
+                autosave = new Autosave(document, interval, idleGap, new Runnable() {
+
+                    @Override
+                    public void run() {
+                        saves.incrementAndGet();
+                    }
+                });
+                autosave.start();
+            }
+        });
+    }
+
+    private void type(final String text) throws Exception {
+        EventQueue.invokeAndWait(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    document.insertString(document.getLength(), text, null);
+                } catch (BadLocationException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+    }
+
+    private void waitForSaves(int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (saves.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        EventQueue.invokeAndWait(new Runnable() {
+
+            @Override
+            public void run() {
+                autosave.detach();
+            }
+        });
+    }
+
+    public void testNothingSavedWithoutEdits() throws Exception {
+        start(50, 50);
+        Thread.sleep(300);
+        assertEquals(0, saves.get());
+    }
+
+    public void testSavesOnceTypingPauses() throws Exception {
+        start(60 * 1000, 50);
+        type("@notes\n");
+        type("Login fails\n");
+        waitForSaves(1);
+        assertEquals(1, saves.get());
+
+        //Nothing changed since, so nothing more is saved
+        Thread.sleep(300);
+        assertEquals(1, saves.get());
+    }
+
+    public void testSavesDuringContinuousTyping() throws Exception {
+        start(100, 60 * 1000);
+        long end = System.currentTimeMillis() + 1000;
+        while (System.currentTimeMillis() < end) {
+            type("x");
+            Thread.sleep(10);
+        }
+        assertTrue(saves.get() >= 2);
+    }
+
+    public void testUserSaveMarksClean() throws Exception {
+        start(60 * 1000, 100);
+        type("@notes\n");
+        EventQueue.invokeAndWait(new Runnable() {
+
+            @Override
+            public void run() {
+                autosave.saved();
+            }
+        });
+        Thread.sleep(400);
+        assertEquals(0, saves.get());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Date;
+import javax.swing.text.PlainDocument;
+import junit.framework.TestCase;
+
+public class EditJournalTest extends TestCase {
+
+    private File journalFile;
+    private PlainDocument document;
+    private EditJournal journal;
+
+    @Override
+    protected void setUp() throws Exception {
+        FileUtils.SESSION_TESTER_DIR.mkdirs();
+        journalFile = new File(FileUtils.SESSION_TESTER_DIR, "test.journal");
+        journalFile.delete();
+        document = new PlainDocument();
+        document.insertString(0, "@notes\n", null);
+        journal = new EditJournal(journalFile, document, 60 * 1000);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        journalFile.delete();
+    }
+
+    public void testRecoverReplaysEdits() throws Exception {
+        Date start = new Date(1224252600000L);
+        File sessionFile = new File("testing_session_2008_10_17_14_10_0_0.xml");
+        journal.begin(sessionFile, start, "Some dude..", "Do stuff..");
+        document.insertString(7, "Login fails\n@bug\ncrash\n", null);
+        document.remove(7, 6);
+        document.insertString(0, "é", null);
+        journal.close();
+
+        EditJournal.Recovery recovery = EditJournal.recover(journalFile);
+        assertEquals(document.getText(0, document.getLength()), recovery.getText());
+        assertEquals(sessionFile, recovery.getSessionFile());
+        assertEquals(start, recovery.getStart());
+        assertEquals("Some dude..", recovery.getTester());
+        assertEquals("Do stuff..", recovery.getMission());
+    }
+
+    public void testRecoverStopsAtTornRecord() throws Exception {
+        journal.begin(new File("session.xml"), new Date(), "Some dude..", "Do stuff..");
+        document.insertString(7, "kept\n", null);
+        journal.close();
+
+        //Append a record cut short by a crash
+        RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+        try {
+            file.seek(file.length());
+            file.writeInt(100);
+            file.write(new byte[] {2, 0, 0});
+        } finally {
+            file.close();
+        }
+
+        assertEquals("@notes\nkept\n", EditJournal.recover(journalFile).getText());
+    }
+
+    public void testRecoverIgnoresCorruptRecord() throws Exception {
+        journal.begin(new File("session.xml"), new Date(), "Some dude..", "Do stuff..");
+        document.insertString(7, "lost\n", null);
+        journal.close();
+
+        //Change the last character of the insert so its checksum no longer matches
+        RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+        try {
+            file.seek(file.length() - 5);
+            file.write('X');
+        } finally {
+            file.close();
+        }
+
+        assertEquals("@notes\n", EditJournal.recover(journalFile).getText());
+    }
+
+    public void testJournalIsRestartedOnceEditsOutgrowText() throws Exception {
+        StringBuilder paste = new StringBuilder();
+        while (paste.length() < 500) {
+            paste.append("Tried saving a file with a very long name\n");
+        }
+        journal.begin(new File("session.xml"), new Date(), "Some dude..", "Do stuff..");
+        for (int i = 0; i < 3000; i++) {
+            document.insertString(7, paste.toString(), null);
+            document.remove(7, paste.length());
+        }
+        document.insertString(7, "last\n", null);
+        journal.close();
+
+        assertTrue(journalFile.length() < 1024 * 1024);
+        assertEquals("@notes\nlast\n", EditJournal.recover(journalFile).getText());
+    }
+
+    public void testEndDeletesJournal() throws Exception {
+        journal.begin(new File("session.xml"), new Date(), "Some dude..", "Do stuff..");
+        document.insertString(7, "saved\n", null);
+        journal.end();
+        journal.close();
+
+        assertFalse(journalFile.exists());
+        assertNull(EditJournal.recover(journalFile));
+    }
+}
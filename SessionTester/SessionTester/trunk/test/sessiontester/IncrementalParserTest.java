@@ -0,0 +1,98 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.util.Random;
+import javax.swing.text.PlainDocument;
+import junit.framework.TestCase;
+
+public class IncrementalParserTest extends TestCase {
+
+    private static final String[] FRAGMENTS = {
+        "@notes", "@bug", "@BUG", "@data", "@area", "@Override", "@",
+        "@timestamp [Sat Oct 17 14:10:00 CEST 2026]",
+        "\n", "\n", "\n", " ", "TEXT", "more text", "email@example.com"
+    };
+
+    public void testTypicalSession() throws Exception {
+        PlainDocument document = new PlainDocument();
+        IncrementalParser parser = new IncrementalParser(document);
+
+        document.insertString(0, "LEADING\n@notes\nNOTES\n@bug\nBUG", null);
+
+        TestingSession session = parser.buildTestingSession();
+        assertEquals("LEADING\nNOTES\n", session.getNotes());
+        assertEquals("BUG\n", session.getBugs());
+    }
+
+    public void testSplittingAndJoiningBlocks() throws Exception {
+        PlainDocument document = new PlainDocument();
+        document.insertString(0, "@notes\nNOTES\n@bug\nBUG", null);
+        IncrementalParser parser = new IncrementalParser(document);
+
+        //Removing the newline before @bug folds the bug into the notes
+        document.remove(12, 1);
+        assertEquals("NOTES@bug\nBUG\n", parser.buildTestingSession().getNotes());
+        assertEquals("", parser.buildTestingSession().getBugs());
+
+        document.insertString(12, "\n", null);
+        assertEquals("NOTES\n", parser.buildTestingSession().getNotes());
+        assertEquals("BUG\n", parser.buildTestingSession().getBugs());
+    }
+
+    public void testRandomEditsMatchFullParse() throws Exception {
+        Random random = new Random(42);
+        PlainDocument document = new PlainDocument();
+        IncrementalParser parser = new IncrementalParser(document);
+
+        for (int i = 0; i < 5000; i++) {
+            int length = document.getLength();
+            if (length > 0 && random.nextInt(3) == 0) {
+                int offset = random.nextInt(length);
+                document.remove(offset, random.nextInt(Math.min(length - offset, 20)) + 1);
+            } else {
+                String fragment = FRAGMENTS[random.nextInt(FRAGMENTS.length)];
+                document.insertString(random.nextInt(length + 1), fragment, null);
+            }
+
+            TestingSession expected = new Parser().parse(document.getText(0, document.getLength()));
+            assertSameFields(expected, parser.buildTestingSession());
+        }
+    }
+
+    private void assertSameFields(TestingSession expected, TestingSession actual) {
+        assertEquals(expected.getNotes(), actual.getNotes());
+        assertEquals(expected.getBugs(), actual.getBugs());
+        assertEquals(expected.getTasks(), actual.getTasks());
+        assertEquals(expected.getIssues(), actual.getIssues());
+        assertEquals(expected.getData(), actual.getData());
+        assertEquals(expected.getEnvironment(), actual.getEnvironment());
+        assertEquals(expected.getArea(), actual.getArea());
+
+        EntryList expectedEntries = expected.getEntries();
+        EntryList actualEntries = actual.getEntries();
+        assertEquals(expectedEntries.size(), actualEntries.size());
+        for (int i = 0; i < expectedEntries.size(); i++) {
+            assertEquals(expectedEntries.getTag(i), actualEntries.getTag(i));
+            assertEquals(expectedEntries.getStart(i), actualEntries.getStart(i));
+            assertEquals(expectedEntries.getEnd(i), actualEntries.getEnd(i));
+            assertEquals(expectedEntries.getTimestampEntry(i), actualEntries.getTimestampEntry(i));
+        }
+
+        Timeline expectedTimeline = expected.getTimeline();
+        Timeline actualTimeline = actual.getTimeline();
+        assertEquals(expectedTimeline.size(), actualTimeline.size());
+        for (int i = 0; i < expectedTimeline.size(); i++) {
+            assertEquals(expectedTimeline.getMillis(i), actualTimeline.getMillis(i));
+            assertEquals(expectedTimeline.getEntryIndex(i), actualTimeline.getEntryIndex(i));
+        }
+    }
+}
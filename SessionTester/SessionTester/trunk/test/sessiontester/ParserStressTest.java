@@ -0,0 +1,117 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.util.Date;
+import junit.framework.TestCase;
+
+/**
+ * Adversarial inputs for the parser. Each case parses its input at 128 KB
+ * and at 1 MB and fails if the time grew faster than linearly. Quadratic
+ * parsing grows about sixty-four times, so the check allows half that, and
+ * a large parse under half a second always passes whatever the ratio.
+ * ScalingBenchmark in the bench target times the same inputs.
+ */
+public class ParserStressTest extends TestCase {
+
+    private static final int SIZE = 1024 * 1024;
+    private static final int FACTOR = 8;
+    private static final long FAST_ENOUGH_NANOS = 500L * 1000 * 1000;
+
+    private static String repeat(String prefix, String fragment, int size) {
+        StringBuilder text = new StringBuilder(prefix);
+        while (text.length() < size) {
+            text.append(fragment);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Parses input by repeating a fragment to SIZE, checks it against the
+     * time at SIZE / FACTOR and returns the session with every field read
+     */
+    private static TestingSession parseRepeating(String prefix, String fragment) {
+        return parseLinearly(repeat(prefix, fragment, SIZE / FACTOR), repeat(prefix, fragment, SIZE));
+    }
+
+    private static TestingSession parseLinearly(String small, String large) {
+        //Warm up so the small run is not measuring the JIT
+        parse(small);
+        long smallNanos = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            parse(small);
+            smallNanos = Math.min(smallNanos, System.nanoTime() - start);
+        }
+
+        long start = System.nanoTime();
+        TestingSession session = parse(large);
+        long largeNanos = System.nanoTime() - start;
+        double growth = (double) largeNanos / Math.max(smallNanos, 1);
+        assertTrue("Parse time grew " + growth + "x for " + FACTOR + "x input",
+                largeNanos < FAST_ENOUGH_NANOS || growth < FACTOR * FACTOR / 2);
+        return session;
+    }
+
+    private static TestingSession parse(String text) {
+        TestingSession session = new Parser().parse(text);
+        session.getNotes();
+        session.getBugs();
+        session.getTimeline().size();
+        return session;
+    }
+
+    public void testMegabyteLine() {
+        assertEquals(SIZE - "@notes\n".length() + 1, parseRepeating("@notes\n", "x").getNotes().length());
+    }
+
+    public void testAddressesAndAnnotations() {
+        TestingSession session = parseRepeating("@notes\n", "tester@example.com @Override @bug ");
+        assertEquals("", session.getBugs());
+        assertTrue(session.getNotes().length() >= SIZE - "@notes\n".length());
+    }
+
+    public void testNearTags() {
+        TestingSession session = parseRepeating("", "\n@bugs\n@no\n@\n@notes x\n@bug");
+        assertEquals("", session.getNotes());
+        assertEquals("", session.getBugs());
+    }
+
+    public void testWhitespaceAfterTags() {
+        assertEquals(0, parseRepeating("", "\n@notes        \t  \n\n\n  \n").getTimeline().size());
+    }
+
+    public void testUnclosedTimestamps() {
+        assertEquals(0, parseRepeating("", "\n@timestamp [ no closing bracket").getTimeline().size());
+    }
+
+    public void testManyBlocks() {
+        String fragment = "\n@bug\nBUG\n@notes\nNOTE";
+        int blocks = (SIZE - "LEADING".length() + fragment.length() - 1) / fragment.length();
+        assertEquals(blocks * "BUG\n".length(), parseRepeating("LEADING", fragment).getBugs().length());
+    }
+
+    public void testTimestampsOutOfOrder() {
+        long start = new Date().getTime() / 1000 * 1000;
+        int size = 4000;
+        StringBuilder text = new StringBuilder();
+        String small = null;
+        for (int i = 0; i < size; i++) {
+            if (i == size / FACTOR) {
+                small = text.toString();
+            }
+            text.append("\n@timestamp [").append(new Date(start - i * 1000L)).append("]");
+        }
+        Timeline timeline = parseLinearly(small, text.toString()).getTimeline();
+        assertEquals(size, timeline.size());
+        assertEquals(start - (size - 1) * 1000L, timeline.getMillis(0));
+    }
+}
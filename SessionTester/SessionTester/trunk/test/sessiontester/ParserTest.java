@@ -10,6 +10,7 @@
  */
 package sessiontester;
 
+import java.util.Date;
 import junit.framework.TestCase;
 
 public class ParserTest extends TestCase {
@@ -26,31 +27,31 @@ public class ParserTest extends TestCase {
 
         TestingSession session = new Parser().parse(s);
 
-        assertEquals("DATA_TEXT\n", session.data);
-        assertEquals("NOTE_TEXT\n", session.notes);
-        assertEquals("ISSUE_TEXT\n", session.issues);
-        assertEquals("BUG_TEXT\n", session.bugs);
-        assertEquals("AREA_TEXT\n", session.area);
-        assertEquals("TASK_TEXT\n", session.tasks);
-        assertEquals("ENV_TEXT\n", session.environment);
+        assertEquals("DATA_TEXT\n", session.getData());
+        assertEquals("NOTE_TEXT\n", session.getNotes());
+        assertEquals("ISSUE_TEXT\n", session.getIssues());
+        assertEquals("BUG_TEXT\n", session.getBugs());
+        assertEquals("AREA_TEXT\n", session.getArea());
+        assertEquals("TASK_TEXT\n", session.getTasks());
+        assertEquals("ENV_TEXT\n", session.getEnvironment());
 
     }
 
     public void testEmptySession() {
         TestingSession session = new Parser().parse("");
 
-        assertEquals("", session.start);
-        assertEquals("", session.end);
-        assertEquals("", session.duration);
-        assertEquals("", session.tester);
-        assertEquals("", session.mission);
-        assertEquals("", session.tasks);
-        assertEquals("", session.data);
-        assertEquals("", session.notes);
-        assertEquals("", session.issues);
-        assertEquals("", session.bugs);
-        assertEquals("", session.area);
-        assertEquals("", session.environment);
+        assertEquals("", session.getStart());
+        assertEquals("", session.getEnd());
+        assertEquals("", session.getDuration());
+        assertEquals("", session.getTester());
+        assertEquals("", session.getMission());
+        assertEquals("", session.getTasks());
+        assertEquals("", session.getData());
+        assertEquals("", session.getNotes());
+        assertEquals("", session.getIssues());
+        assertEquals("", session.getBugs());
+        assertEquals("", session.getArea());
+        assertEquals("", session.getEnvironment());
 
     }
 
@@ -69,13 +70,13 @@ public class ParserTest extends TestCase {
 
         TestingSession session = new Parser().parse(s);
 
-        assertEquals("NOTES1_TEXT\nPLUS_MORE\nNOTES2_TEXT\nNOTES3_TEXT\n", session.notes);
-        assertEquals("BUG1_TEXT\nBUG2_TEXT\n", session.bugs);
-        assertEquals("TASK_TEXT\n", session.tasks);
-        assertEquals("ISSUE_TEXT\n", session.issues);
-        assertEquals("DATA_TEXT\n", session.data);
-        assertEquals("AREA_TEXT\n", session.area);
-        assertEquals("ENV_TEXT\n", session.environment);
+        assertEquals("NOTES1_TEXT\nPLUS_MORE\nNOTES2_TEXT\nNOTES3_TEXT\n", session.getNotes());
+        assertEquals("BUG1_TEXT\nBUG2_TEXT\n", session.getBugs());
+        assertEquals("TASK_TEXT\n", session.getTasks());
+        assertEquals("ISSUE_TEXT\n", session.getIssues());
+        assertEquals("DATA_TEXT\n", session.getData());
+        assertEquals("AREA_TEXT\n", session.getArea());
+        assertEquals("ENV_TEXT\n", session.getEnvironment());
     }
 
     public void testEmptyTagParsingBug() {
@@ -85,9 +86,9 @@ public class ParserTest extends TestCase {
 
         TestingSession session = new Parser().parse(s);
 
-        assertEquals("", session.data);
-        assertEquals("NOTES\n", session.notes);
-        assertEquals("BUG\n", session.bugs);
+        assertEquals("", session.getData());
+        assertEquals("NOTES\n", session.getNotes());
+        assertEquals("BUG\n", session.getBugs());
     }
 
     public void testDuplicateTagParsingBug() {
@@ -106,9 +107,88 @@ public class ParserTest extends TestCase {
 
         TestingSession session = new Parser().parse(s);
 
-        assertEquals("NOTES\n", session.notes);
-        assertEquals("BUG_1\nBUG_2\nBUG_3\nBUG_4\nBUG_5\nBUG_6\n", session.bugs);
-        assertEquals("ENVIRONMENT\n", session.environment);
+        assertEquals("NOTES\n", session.getNotes());
+        assertEquals("BUG_1\nBUG_2\nBUG_3\nBUG_4\nBUG_5\nBUG_6\n", session.getBugs());
+        assertEquals("ENVIRONMENT\n", session.getEnvironment());
 
     }
+
+    public void testUnknownTagEndsBlock() {
+        String s = "@notes\nNOTES\n@Override\nIGNORED\n@bug\nBUG";
+
+        TestingSession session = new Parser().parse(s);
+
+        assertEquals("NOTES\n", session.getNotes());
+        assertEquals("BUG\n", session.getBugs());
+    }
+
+    public void testBlankLinesAfterTag() {
+        String s = "@notes  \n\n  NOTES\n@data\n\n@bug\nBUG";
+
+        TestingSession session = new Parser().parse(s);
+
+        assertEquals("  NOTES\n", session.getNotes());
+        assertEquals("\n", session.getData());
+        assertEquals("BUG\n", session.getBugs());
+    }
+
+    public void testEntryOffsets() {
+        String s = "LEADING\n@bug\nBUG_1\n@timestamp [Sat Oct 17 14:10:00 CEST 2026]\n@notes\nNOTES\n@bug\nBUG_2";
+
+        EntryList entries = new Parser().parse(s).getEntries();
+
+        assertEquals(5, entries.size());
+        assertEquals(Parser.NOTES, entries.getTag(0));
+        assertEquals("LEADING", entries.getText(0));
+        assertEquals(Parser.BUG, entries.getTag(1));
+        assertEquals(s.indexOf("BUG_1"), entries.getStart(1));
+        assertEquals(s.indexOf("BUG_1") + 5, entries.getEnd(1));
+        assertEquals(-1, entries.getTimestampEntry(1));
+        assertEquals(Parser.TIMESTAMP, entries.getTag(2));
+        assertEquals("Sat Oct 17 14:10:00 CEST 2026", entries.getText(2));
+        assertEquals(Parser.NOTES, entries.getTag(3));
+        assertEquals(2, entries.getTimestampEntry(3));
+        assertEquals("BUG_2", entries.getText(4));
+        assertEquals(2, entries.getTimestampEntry(4));
+    }
+
+    public void testTimeline() {
+        Date first = new Date(1224252600000L);
+        Date second = new Date(first.getTime() + 20 * 60 * 1000);
+        Date third = new Date(first.getTime() + 40 * 60 * 1000);
+        String s = "@timestamp [" + first + "]" +
+                "\n@area\nLOGIN" +
+                "\n@timestamp [" + third + "]" +
+                "\n@area\nREPORTS" +
+                "\n@timestamp [not a date]" +
+                "\n@timestamp [" + second + "]" +
+                "\n@bug\nBUG";
+
+        TestingSession session = new Parser().parse(s);
+        Timeline timeline = session.getTimeline();
+        EntryList entries = session.getEntries();
+
+        assertEquals(3, timeline.size());
+        assertEquals(first.getTime(), timeline.getMillis(0));
+        assertEquals(second.getTime(), timeline.getMillis(1));
+        assertEquals(third.getTime(), timeline.getMillis(2));
+        assertEquals("BUG", entries.getText(timeline.getEntryIndex(1) + 1));
+
+        //What happened between 10 and 30 minutes in
+        assertEquals(1, timeline.indexAtOrAfter(first.getTime() + 10 * 60 * 1000));
+        assertEquals(1, timeline.indexAtOrBefore(first.getTime() + 30 * 60 * 1000));
+        assertEquals(-1, timeline.indexAtOrBefore(first.getTime() - 1));
+        assertEquals(3, timeline.indexAtOrAfter(third.getTime() + 1));
+    }
+
+    public void testCustomTags() {
+        String s = "@notes\nNOTES\n@Risk\nRISK_1\n@question\nQUESTION\n@risk\nRISK_2\n@unregistered\nIGNORED";
+
+        TestingSession session = new Parser(TagRegistry.withCustomTags("@risk, question")).parse(s);
+
+        assertEquals("NOTES\n", session.getNotes());
+        assertEquals("RISK_1\nRISK_2\n", session.getExtension("risk"));
+        assertEquals("QUESTION\n", session.getExtension("question"));
+        assertEquals(2, session.getExtensionNames().size());
+    }
 }
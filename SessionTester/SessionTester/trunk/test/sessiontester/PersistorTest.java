@@ -10,8 +10,17 @@
  */
 package sessiontester;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import junit.framework.TestCase;
 
 public class PersistorTest extends TestCase {
@@ -31,37 +40,365 @@ public class PersistorTest extends TestCase {
 
     public void testSaveAndLoad() throws Exception {
         TestingSession sessionLHS = new TestingSession();
-        sessionLHS.start = "5/30/00 03:20 pm";
-        sessionLHS.end = "5/30/00 05:20 pm";
-        sessionLHS.duration = "63 minutes";
-        sessionLHS.tester = "Some dude..";
-        sessionLHS.mission = "Do stuff..";
-        sessionLHS.tasks = "blah...";
-        sessionLHS.data = "blah 2...";
-        sessionLHS.notes = "blah 3...";
-        sessionLHS.issues = "Issues..";
-        sessionLHS.bugs = "blah 4...";
+        sessionLHS.setStart("5/30/00 03:20 pm");
+        sessionLHS.setEnd("5/30/00 05:20 pm");
+        sessionLHS.setDuration("63 minutes");
+        sessionLHS.setTester("Some dude..");
+        sessionLHS.setMission("Do stuff..");
+        sessionLHS.setTasks("blah...");
+        sessionLHS.setData("blah 2...");
+        sessionLHS.setNotes("blah 3...");
+        sessionLHS.setIssues("Issues..");
+        sessionLHS.setBugs("blah 4...");
 
         File file = Persistor.save(FileUtils.buildTestingSessionFileFromCurrentTime(), sessionLHS);
 
         TestingSession sessionRHS = Persistor.load(file);
 
-        assertEquals(sessionLHS.start, sessionRHS.start);
-        assertEquals(sessionLHS.end, sessionRHS.end);
-        assertEquals(sessionLHS.duration, sessionRHS.duration);
-        assertEquals(sessionLHS.tester, sessionRHS.tester);
-        assertEquals(sessionLHS.mission, sessionRHS.mission);
-        assertEquals(sessionLHS.tasks, sessionRHS.tasks);
-        assertEquals(sessionLHS.data, sessionRHS.data);
-        assertEquals(sessionLHS.issues, sessionRHS.issues);
-        assertEquals(sessionLHS.notes, sessionRHS.notes);
+        assertEquals(sessionLHS.getStart(), sessionRHS.getStart());
+        assertEquals(sessionLHS.getEnd(), sessionRHS.getEnd());
+        assertEquals(sessionLHS.getDuration(), sessionRHS.getDuration());
+        assertEquals(sessionLHS.getTester(), sessionRHS.getTester());
+        assertEquals(sessionLHS.getMission(), sessionRHS.getMission());
+        assertEquals(sessionLHS.getTasks(), sessionRHS.getTasks());
+        assertEquals(sessionLHS.getData(), sessionRHS.getData());
+        assertEquals(sessionLHS.getIssues(), sessionRHS.getIssues());
+        assertEquals(sessionLHS.getNotes(), sessionRHS.getNotes());
     }
 
     public void testEncodingSpecialCharacters() throws Exception {
         TestingSession sessionLHS = new TestingSession();
-        sessionLHS.bugs = "<CPU is at 83%>";
+        sessionLHS.setBugs("<CPU is at 83%>");
         File file = Persistor.save(FileUtils.buildTestingSessionFileFromCurrentTime(), sessionLHS);
         TestingSession sessionRHS = Persistor.load(file);
-        assertEquals(sessionLHS.bugs, sessionRHS.bugs);
+        assertEquals(sessionLHS.getBugs(), sessionRHS.getBugs());
+    }
+
+    public void testSaveAndLoadLineBreaksAndMarkup() throws Exception {
+        TestingSession sessionLHS = new TestingSession();
+        sessionLHS.setNotes("line 1\r\nline 2\rline 3\n");
+        sessionLHS.setMission("Check <a href=\"x\">&amp;</a> ]]> and \u00e9\u2603\ud83d\ude00");
+        File file = Persistor.save(FileUtils.buildTestingSessionFileFromCurrentTime(), sessionLHS);
+        TestingSession sessionRHS = Persistor.load(file);
+        assertEquals(sessionLHS.getNotes(), sessionRHS.getNotes());
+        assertEquals(sessionLHS.getMission(), sessionRHS.getMission());
+        assertEquals("", sessionRHS.getBugs());
+    }
+
+    public void testSaveAndLoadExtensions() throws Exception {
+        TestingSession sessionLHS = new TestingSession();
+        sessionLHS.setExtension("risk", "Data loss on <crash>");
+        sessionLHS.setExtension("perf", "Slow save");
+        File file = Persistor.save(FileUtils.buildTestingSessionFileFromCurrentTime(), sessionLHS);
+        TestingSession sessionRHS = Persistor.load(file);
+        assertEquals(sessionLHS.getExtensionNames(), sessionRHS.getExtensionNames());
+        assertEquals(sessionLHS.getExtension("risk"), sessionRHS.getExtension("risk"));
+        assertEquals(sessionLHS.getExtension("perf"), sessionRHS.getExtension("perf"));
+    }
+
+    public void testLoadHandWrittenFile() throws Exception {
+        File file = FileUtils.buildTestingSessionFileFromCurrentTime();
+        FileUtils.writeToFile(file, "<?xml version=\"1.0\"?>\n<TestingSession><!-- edited -->"
+                + "<Notes>first <![CDATA[<b>]]> &amp; more</Notes><Notes>second</Notes>"
+                + "<Other><Tester>nested</Tester></Other><Tester>Some dude..</Tester></TestingSession>\n");
+        TestingSession session = Persistor.load(file);
+        assertEquals("first <b> & more", session.getNotes());
+        assertEquals("Some dude..", session.getTester());
+        assertEquals("", session.getBugs());
+    }
+
+    public void testLoadHeaderReadsBodyOnFirstUse() throws Exception {
+        TestingSession sessionLHS = new TestingSession();
+        sessionLHS.setTester("Some dude..");
+        sessionLHS.setMission("Do stuff..");
+        sessionLHS.setArea("Login");
+        sessionLHS.setNotes("blah 3...");
+        File file = Persistor.save(FileUtils.buildTestingSessionFileFromCurrentTime(), sessionLHS);
+
+        TestingSession sessionRHS = Persistor.loadHeader(file);
+        assertEquals("Some dude..", sessionRHS.getTester());
+        assertEquals("Do stuff..", sessionRHS.getMission());
+        assertEquals("Login", sessionRHS.getArea());
+
+        sessionLHS.setNotes("changed on disk");
+        sessionLHS.setExtension("risk", "Data loss");
+        Persistor.save(file, sessionLHS);
+        assertEquals("changed on disk", sessionRHS.getNotes());
+        assertEquals("Data loss", sessionRHS.getExtension("risk"));
+        assertEquals("Login", sessionRHS.getArea());
+    }
+
+    public void testSaveAndLoadBinary() throws Exception {
+        TestingSession sessionLHS = new TestingSession();
+        sessionLHS.setStart("5/30/00 03:20 pm");
+        sessionLHS.setTester("Some dude..");
+        sessionLHS.setMission("Check <markup> and \u00e9\u2603\ud83d\ude00");
+        sessionLHS.setArea("Login");
+        sessionLHS.setNotes("line 1\r\nline 2\rline 3\n");
+        sessionLHS.setBugs("blah 4...");
+        sessionLHS.setExtension("risk", "Data loss");
+        File file = Persistor.save(FileUtils.buildTestingSessionFileFromCurrentTime(), sessionLHS, Persistor.Format.BINARY);
+
+        TestingSession sessionRHS = Persistor.load(file);
+        assertEquals(sessionLHS.getStart(), sessionRHS.getStart());
+        assertEquals(sessionLHS.getTester(), sessionRHS.getTester());
+        assertEquals(sessionLHS.getMission(), sessionRHS.getMission());
+        assertEquals(sessionLHS.getArea(), sessionRHS.getArea());
+        assertEquals(sessionLHS.getNotes(), sessionRHS.getNotes());
+        assertEquals(sessionLHS.getBugs(), sessionRHS.getBugs());
+        assertEquals("", sessionRHS.getData());
+        assertEquals("Data loss", sessionRHS.getExtension("risk"));
+
+        TestingSession header = Persistor.loadHeader(file);
+        assertEquals("Login", header.getArea());
+        assertEquals(sessionLHS.getNotes(), header.getNotes());
+    }
+
+    public void testSaveAndLoadTimeline() throws Exception {
+        Date first = new Date(1224252600000L);
+        Date second = new Date(first.getTime() + 20 * 60 * 1000);
+        TestingSession sessionLHS = new Parser().parse("@timestamp [" + second + "]"
+                + "\n@area\nLOGIN\n@timestamp [" + first + "]\n@bug\nBUG");
+        File xml = Persistor.save(FileUtils.buildTestingSessionFileFromCurrentTime(), sessionLHS, Persistor.Format.XML);
+        File binary = Persistor.save(new File(xml.getPath() + ".bin"), sessionLHS, Persistor.Format.BINARY);
+        try {
+            for (File file : new File[] {xml, binary}) {
+                assertSameTimeline(sessionLHS.getTimeline(), Persistor.load(file).getTimeline());
+                assertSameTimeline(sessionLHS.getTimeline(), Persistor.loadHeader(file).getTimeline());
+            }
+        } finally {
+            binary.delete();
+        }
+
+        TestingSession empty = new TestingSession();
+        assertNull(Persistor.load(Persistor.save(xml, empty, Persistor.Format.XML)).getTimeline());
+        assertNull(Persistor.load(Persistor.save(xml, empty, Persistor.Format.BINARY)).getTimeline());
+    }
+
+    private static void assertSameTimeline(Timeline expected, Timeline actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getMillis(i), actual.getMillis(i));
+            assertEquals(expected.getEntryIndex(i), actual.getEntryIndex(i));
+        }
+    }
+
+    public void testLoadRejectsCorruptBinary() throws Exception {
+        File file = FileUtils.buildTestingSessionFileFromCurrentTime();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(BinarySessionFormat.MAGIC);
+        BinarySessionFormat.writeVarint(bytes, 1);
+        BinarySessionFormat.writeVarint(bytes, BinarySessionFormat.MAX_RECORD_LENGTH + 1);
+        assertLoadFails(file, bytes.toByteArray());
+
+        bytes.reset();
+        bytes.write(BinarySessionFormat.MAGIC);
+        BinarySessionFormat.writeVarint(bytes, Persistor.FIELDS.length + 1);
+        BinarySessionFormat.writeVarint(bytes, 2);
+        BinarySessionFormat.writeVarint(bytes, 100);
+        bytes.write('x');
+        assertLoadFails(file, bytes.toByteArray());
+        file.delete();
+    }
+
+    private static void assertLoadFails(File file, byte[] bytes) throws Exception {
+        OutputStream out = new FileOutputStream(file);
+        out.write(bytes);
+        out.close();
+        try {
+            Persistor.load(file);
+            fail("Loaded a corrupt session");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("out of range"));
+        }
+    }
+
+    public void testBinaryIsSmallerThanXml() throws Exception {
+        TestingSession session = new TestingSession();
+        session.setTester("Some dude..");
+        session.setNotes("blah 3...");
+        File xml = Persistor.save(FileUtils.buildTestingSessionFileFromCurrentTime(), session, Persistor.Format.XML);
+        File binary = Persistor.save(new File(xml.getPath() + ".bin"), session, Persistor.Format.BINARY);
+        assertTrue(binary.length() < xml.length() / 4);
+        binary.delete();
+    }
+
+    public void testSaveAndLoadCompressed() throws Exception {
+        TestingSession sessionLHS = new TestingSession();
+        sessionLHS.setTester("Some dude..");
+        sessionLHS.setNotes("blah 3...");
+        for (Persistor.Format format : Persistor.Format.values()) {
+            File file = new File(FileUtils.buildTestingSessionFileFromCurrentTime().getPath() + Persistor.COMPRESSED_SUFFIX);
+            Persistor.save(file, sessionLHS, format);
+            assertTrue(Persistor.isCompressed(file));
+
+            InputStream in = new FileInputStream(file);
+            assertEquals(0x1f, in.read());
+            assertEquals(0x8b, in.read());
+            in.close();
+
+            assertEquals("blah 3...", Persistor.load(file).getNotes());
+            assertEquals("Some dude..", Persistor.loadHeader(file).getTester());
+        }
+    }
+
+    public void testCompress() throws Exception {
+        TestingSession session = new TestingSession();
+        session.setNotes("blah 3...");
+        File file = Persistor.save(FileUtils.buildTestingSessionFileFromCurrentTime(), session);
+        File compressed = Persistor.compress(file);
+        assertFalse(file.exists());
+        assertEquals(file.getPath() + Persistor.COMPRESSED_SUFFIX, compressed.getPath());
+        assertEquals("blah 3...", Persistor.load(compressed).getNotes());
+    }
+
+    public void testLoadAllInArchiveOrder() throws Exception {
+        File root = new File(FileUtils.SESSION_TESTER_DIR, "load_all_test");
+        long[] times = {1222900200000L, 1221863400000L, 1224252600000L, 1224252600001L, 1224252600002L};
+        for (int i = 0; i < times.length; i++) {
+            TestFiles.save(root, times[i], TestFiles.session("", "session " + i));
+        }
+        File lastDay = FileUtils.buildTestingSessionFile(root, new Date(times[4])).getParentFile();
+        SessionPack.pack(lastDay, Long.MAX_VALUE);
+        Persistor.compress(FileUtils.buildTestingSessionFile(root, new Date(times[0])));
+
+        final List<String> loaded = new ArrayList<String>();
+        Persistor.Visitor visitor = new Persistor.Visitor() {
+
+            @Override
+            public void visit(File file, TestingSession session) {
+                loaded.add(session.getNotes());
+            }
+        };
+        try {
+            Persistor.loadAll(root, null, 3, visitor);
+            assertEquals("[session 1, session 0, session 2, session 3, session 4]", loaded.toString());
+
+            loaded.clear();
+            Persistor.loadAll(root, new FileFilter() {
+
+                @Override
+                public boolean accept(File file) {
+                    return !file.getName().endsWith("_1.xml");
+                }
+            }, 1, visitor);
+            assertEquals("[session 1, session 0, session 2, session 4]", loaded.toString());
+        } finally {
+            TestFiles.delete(root);
+        }
+    }
+
+    public void testSessionsBetweenSkipsOtherDays() throws Exception {
+        File root = new File(FileUtils.SESSION_TESTER_DIR, "sessions_between_test");
+        long day = 24L * 60 * 60 * 1000;
+        long start = 1224252600000L;
+        long[] times = {start - 400 * day, start - day, start + 1, start, start + day, start + 40 * day};
+        for (int i = 0; i < times.length; i++) {
+            TestFiles.save(root, times[i], TestFiles.session("", "session " + i));
+        }
+        SessionPack.pack(FileUtils.buildTestingSessionFile(root, new Date(start)).getParentFile(), Long.MAX_VALUE);
+        //Would fail to load if the directory of another year were read
+        File misplaced = new File(FileUtils.buildTestingSessionFile(root, new Date(start - 400 * day)).getParentFile(),
+                FileUtils.buildTestingSessionFile(root, new Date(start + 2)).getName());
+        FileUtils.writeToFile(misplaced, "not a session");
+
+        final List<String> loaded = new ArrayList<String>();
+        Persistor.Visitor visitor = new Persistor.Visitor() {
+
+            @Override
+            public void visit(File file, TestingSession session) {
+                loaded.add(session.getNotes());
+            }
+        };
+        try {
+            Persistor.sessionsBetween(root, new Date(start - day), new Date(start + 40 * day), null, 2, visitor);
+            assertEquals("[session 1, session 3, session 2, session 4]", loaded.toString());
+
+            loaded.clear();
+            Persistor.sessionsBetween(root, new Date(start), new Date(start + day + 1), new FileFilter() {
+
+                @Override
+                public boolean accept(File file) {
+                    return !file.getName().endsWith("_1.xml");
+                }
+            }, 1, visitor);
+            assertEquals("[session 3, session 4]", loaded.toString());
+        } finally {
+            TestFiles.delete(root);
+        }
+    }
+
+    public void testLoadHeaderWithAreaLast() throws Exception {
+        File file = FileUtils.buildTestingSessionFileFromCurrentTime();
+        FileUtils.writeToFile(file, "<TestingSession><Tester>Some dude..</Tester><Notes>blah 3...</Notes>"
+                + "<Area>Login</Area></TestingSession>");
+        TestingSession session = Persistor.loadHeader(file);
+        assertEquals("Some dude..", session.getTester());
+        assertEquals("Login", session.getArea());
+        assertEquals("blah 3...", session.getNotes());
+    }
+
+    /**
+     * The layout of files saved before header loading: Area after the body
+     */
+    public void testLoadHeaderOfBaselineFile() throws Exception {
+        String notes = new String(new char[16 * 1024]).replace('\0', 'x');
+        File file = FileUtils.buildTestingSessionFileFromCurrentTime();
+        FileUtils.writeToFile(file, "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n<TestingSession>\n"
+                + "  <Start>5/30/00 03:20 pm</Start>\n  &#13;\n\n  <End/>\n  &#13;\n\n  <Duration/>\n  &#13;\n\n"
+                + "  <Tester>Some dude..</Tester>\n  &#13;\n\n  <Mission>Do stuff..</Mission>\n  &#13;\n\n"
+                + "  <Tasks/>\n  &#13;\n\n  <Data/>\n  &#13;\n\n  <Notes>" + notes + "</Notes>\n  &#13;\n\n"
+                + "  <Issues/>\n  &#13;\n\n  <Bugs/>\n  &#13;\n\n  <Environment/>\n  &#13;\n\n"
+                + "  <Area>Login &amp; logout</Area>\n  &#13;\n\n</TestingSession>\n");
+        TestingSession session = Persistor.loadHeader(file);
+        assertEquals("Some dude..", session.getTester());
+        assertEquals("Do stuff..", session.getMission());
+        assertEquals("Login & logout", session.getArea());
+        assertEquals(notes, session.getNotes());
+        file.delete();
+    }
+
+    public void testSaveKeepsAreaLast() throws Exception {
+        TestingSession sessionLHS = new TestingSession();
+        sessionLHS.setMission("Do stuff..");
+        sessionLHS.setArea(new String(new char[8 * 1024]).replace('\0', 'a'));
+        sessionLHS.setNotes("blah 3...");
+        sessionLHS.setExtension("risk", "Data loss");
+        File file = Persistor.save(FileUtils.buildTestingSessionFileFromCurrentTime(), sessionLHS);
+        String xml = TestFiles.read(file);
+        assertTrue(xml.indexOf("<Notes>") < xml.indexOf("<Area>"));
+        assertTrue(xml.indexOf("<Extension") < xml.indexOf("<Area>"));
+
+        //Too long for the tail, so found by reading on from the head
+        TestingSession sessionRHS = Persistor.loadHeader(file);
+        assertEquals(sessionLHS.getArea(), sessionRHS.getArea());
+        assertEquals("Do stuff..", sessionRHS.getMission());
+        file.delete();
+    }
+
+    public void testSaveReplacesFileWithoutLeavingTempFile() throws Exception {
+        TestingSession sessionLHS = new TestingSession();
+        sessionLHS.setNotes("first");
+        File file = Persistor.save(FileUtils.buildTestingSessionFileFromCurrentTime(), sessionLHS);
+        sessionLHS.setNotes("second");
+        Persistor.save(file, sessionLHS);
+
+        assertEquals("second", Persistor.load(file).getNotes());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    public void testSaveWithEachSyncPolicy() throws Exception {
+        Persistor.SyncPolicy original = Persistor.getSyncPolicy();
+        try {
+            for (Persistor.SyncPolicy policy : Persistor.SyncPolicy.values()) {
+                Persistor.setSyncPolicy(policy);
+                TestingSession sessionLHS = new TestingSession();
+                sessionLHS.setNotes(policy.toString());
+                File file = Persistor.save(FileUtils.buildTestingSessionFileFromCurrentTime(), sessionLHS);
+                assertEquals(policy.toString(), Persistor.load(file).getNotes());
+            }
+        } finally {
+            Persistor.setSyncPolicy(original);
+        }
     }
 }
@@ -60,6 +60,46 @@ public class PreferencesUtilsTest extends TestCase
         }
     }
 
+    public void testSetCustomTags_ValidValue()
+    {
+        String strOrigValue = prefs.GetCustomTags();
+
+        prefs.SetCustomTags("@risk @question");
+
+        assertEquals("@risk @question", prefs.GetCustomTags());
+        prefs.SetCustomTags(strOrigValue);
+    }
+
+    public void testSetAutosaveInterval_ValidValue()
+    {
+        int intOrigValue = prefs.GetAutosaveInterval();
+
+        prefs.SetAutosaveInterval(30);
+
+        assertEquals(30, prefs.GetAutosaveInterval());
+        prefs.SetAutosaveInterval(intOrigValue);
+    }
+
+    public void testSetCompressAfterDays_ValidValue()
+    {
+        int intOrigValue = prefs.GetCompressAfterDays();
+
+        prefs.SetCompressAfterDays(90);
+
+        assertEquals(90, prefs.GetCompressAfterDays());
+        prefs.SetCompressAfterDays(intOrigValue);
+    }
+
+    public void testSetPackSessions_ValidValue()
+    {
+        boolean boolOrigValue = prefs.GetPackSessions();
+
+        prefs.SetPackSessions(!boolOrigValue);
+
+        assertEquals(!boolOrigValue, prefs.GetPackSessions());
+        prefs.SetPackSessions(boolOrigValue);
+    }
+
     // Variables
     PreferencesUtils prefs;
 }
@@ -0,0 +1,104 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import junit.framework.TestCase;
+
+public class SearchIndexTest extends TestCase {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long START = 1224252600000L;
+    private File root;
+
+    @Override
+    protected void setUp() throws Exception {
+        root = new File(FileUtils.SESSION_TESTER_DIR, "search_test");
+        TestFiles.delete(root);
+        save(START, "Login page crashed when clicking Save.", "Timeout after upload");
+        save(START + DAY, "The report button is slow.", "Login failed");
+        save(START + 2 * DAY, "Uploading a large image timed out.", "");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SearchIndex.close(root);
+        SessionCatalog.close(root);
+        TestFiles.delete(root);
+    }
+
+    private File save(long time, String notes, String bugs) throws Exception {
+        TestingSession session = TestFiles.session("Tester " + time, notes);
+        session.setBugs(bugs);
+        return TestFiles.save(root, time, session);
+    }
+
+    private String search(String query) throws Exception {
+        List<SessionCatalog.Entry> entries = SearchIndex.open(root).search(query, 10);
+        StringBuilder result = new StringBuilder();
+        for (SessionCatalog.Entry entry : entries) {
+            result.append((entry.getDate().getTime() - START) / DAY).append(' ');
+        }
+        return result.toString().trim();
+    }
+
+    public void testTermsAreCaseInsensitiveAndCombined() throws Exception {
+        assertEquals("1 0", search("LOGIN"));
+        assertEquals("0", search("login timeout"));
+        assertEquals("", search("login image"));
+        assertEquals("", search("nothing"));
+        assertEquals("", search(""));
+    }
+
+    public void testTermsIgnoreDefaultLocale() throws Exception {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr"));
+        try {
+            save(START + 3 * DAY, "INVALID INPUT on the Issues page.", "");
+            assertEquals("3", search("invalid"));
+            assertEquals("3", search("Issues input"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    public void testPrefixAndPhrase() throws Exception {
+        assertEquals("2 0", search("upload*"));
+        assertEquals("0", search("\"page crashed\""));
+        assertEquals("", search("\"crashed page\""));
+        //Phrases do not run from the notes into the bugs
+        assertEquals("", search("\"save timeout\""));
+        assertEquals("2", search("\"timed out\" large"));
+    }
+
+    public void testSaveUpdatesOpenIndex() throws Exception {
+        SearchIndex index = SearchIndex.open(root);
+        assertEquals(3, index.size());
+        save(START + DAY, "The report button is fast now.", "");
+        assertEquals("1", search("fast"));
+        assertEquals("", search("slow"));
+        assertEquals("0", search("login"));
+    }
+
+    public void testReopenAndCatchUp() throws Exception {
+        SearchIndex.open(root);
+        SearchIndex.close(root);
+        SessionCatalog.close(root);
+        assertTrue(new File(root, SearchIndex.FILE_NAME).exists());
+
+        FileUtils.buildTestingSessionFile(root, new Date(START)).delete();
+        assertEquals("1", search("login"));
+        assertEquals("2", search("image"));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.File;
+import java.util.Date;
+import junit.framework.TestCase;
+
+public class SessionCacheTest extends TestCase {
+
+    private static final long START = 1224252600000L;
+    private File root;
+
+    @Override
+    protected void setUp() throws Exception {
+        root = new File(FileUtils.SESSION_TESTER_DIR, "cache_test");
+        TestFiles.delete(root);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestFiles.delete(root);
+    }
+
+    private static TestingSession session(String notes) {
+        TestingSession session = TestFiles.session("Jonathan", notes);
+        session.setExtension("risk", "high");
+        return session;
+    }
+
+    public void testHitsUntilFileChanges() throws Exception {
+        SessionCache cache = new SessionCache(1000);
+        File file = new File(root, "session.xml");
+        assertNull(cache.get(file, 1, 10));
+        cache.put(file, 1, 10, session("notes"));
+
+        TestingSession hit = cache.get(file, 1, 10);
+        assertEquals("notes", hit.getNotes());
+        assertEquals("high", hit.getExtension("risk"));
+        assertEquals("Jonathan".length() + "notes".length() + "risk".length() + "high".length(), cache.getWeight());
+
+        //Callers get copies
+        hit.setNotes("changed");
+        assertEquals("notes", cache.get(file, 1, 10).getNotes());
+
+        assertNull(cache.get(file, 2, 10));
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        SessionCache cache = new SessionCache(3 * 30);
+        File[] files = new File[4];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new File(root, i + ".xml");
+            //30 characters each
+            cache.put(files[i], 1, 1, session("01234567890123"));
+            if (i == 2) {
+                cache.get(files[0], 1, 1);
+            }
+        }
+        assertEquals(3, cache.size());
+        assertNull(cache.get(files[1], 1, 1));
+        assertNotNull(cache.get(files[0], 1, 1));
+        assertNotNull(cache.get(files[3], 1, 1));
+
+        cache.put(new File(root, "big.xml"), 1, 1, session(new String(new char[100])));
+        assertEquals(3, cache.size());
+        cache.setCapacity(0);
+        assertEquals(0, cache.getWeight());
+    }
+
+    public void testSaveInvalidatesLoad() throws Exception {
+        SessionCache cache = Persistor.getCache();
+        File file = Persistor.save(FileUtils.buildTestingSessionFile(root, new Date(START)), session("first"));
+        Persistor.load(file);
+        long hits = cache.getHits();
+        assertEquals("first", Persistor.load(file).getNotes());
+        assertEquals(hits + 1, cache.getHits());
+
+        //Even within the same modification time
+        long modified = file.lastModified();
+        Persistor.save(file, session("again"));
+        file.setLastModified(modified);
+        assertEquals("again", Persistor.load(file).getNotes());
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class SessionCatalogTest extends TestCase {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long START = 1224252600000L;
+    private File root;
+
+    @Override
+    protected void setUp() throws Exception {
+        root = new File(FileUtils.SESSION_TESTER_DIR, "catalog_test");
+        TestFiles.delete(root);
+        save(START, "Jonathan", "Login");
+        save(START + DAY, "Aaron", "Reports");
+        save(START + 40 * DAY, "jonathan", "Reports");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SessionCatalog.close(root);
+        TestFiles.delete(root);
+    }
+
+    private File save(long time, String tester, String area) throws Exception {
+        TestingSession session = TestFiles.session(tester, "blah 3...");
+        session.setArea(area);
+        return TestFiles.save(root, time, session);
+    }
+
+    private static String testers(List<SessionCatalog.Entry> entries) {
+        StringBuilder result = new StringBuilder();
+        for (SessionCatalog.Entry entry : entries) {
+            result.append(entry.getTester()).append(' ');
+        }
+        return result.toString().trim();
+    }
+
+    public void testLookups() throws Exception {
+        SessionCatalog catalog = SessionCatalog.open(root);
+        assertEquals(3, catalog.size());
+        assertEquals("Jonathan jonathan", testers(catalog.byTester("JONATHAN")));
+        assertEquals("Aaron jonathan", testers(catalog.byArea("reports")));
+        assertEquals("Jonathan Aaron", testers(catalog.byDate(new Date(START), new Date(START + 2 * DAY))));
+        assertEquals("", testers(catalog.byTester("Nobody")));
+
+        SessionCatalog.Entry entry = catalog.byArea("Login").get(0);
+        assertEquals(START, entry.getDate().getTime());
+        assertEquals(entry.getFile().length(), entry.getSize());
+        assertEquals("blah 3...", Persistor.load(entry.getFile()).getNotes());
+    }
+
+    public void testReopenReadsCatalogFile() throws Exception {
+        SessionCatalog.open(root);
+        SessionCatalog.close(root);
+        assertTrue(new File(root, SessionCatalog.FILE_NAME).exists());
+
+        SessionCatalog catalog = SessionCatalog.open(root);
+        assertEquals(3, catalog.size());
+        assertEquals("Jonathan jonathan", testers(catalog.byTester("jonathan")));
+    }
+
+    public void testCatchesUpWithChangesWhileClosed() throws Exception {
+        SessionCatalog.open(root);
+        SessionCatalog.close(root);
+
+        save(START + 2 * DAY, "Alex", "Login");
+        FileUtils.buildTestingSessionFile(root, new Date(START)).delete();
+
+        SessionCatalog catalog = SessionCatalog.open(root);
+        assertEquals(3, catalog.size());
+        assertEquals("Alex", testers(catalog.byArea("Login")));
+    }
+
+    public void testSaveUpdatesOpenCatalog() throws Exception {
+        SessionCatalog catalog = SessionCatalog.open(root);
+        File file = save(START + 3 * DAY, "Alex", "Login");
+        assertEquals("Jonathan Alex", testers(catalog.byArea("Login")));
+        assertEquals(file.length(), catalog.byTester("Alex").get(0).getSize());
+
+        SessionPack.pack(file.getParentFile(), Long.MAX_VALUE);
+        List<SessionCatalog.Entry> alex = catalog.byTester("Alex");
+        assertEquals(1, alex.size());
+        assertEquals("Login", Persistor.load(alex.get(0).getFile()).getArea());
+    }
+
+    public void testSaveDoesNotWaitForCatalog() throws Exception {
+        final SessionCatalog catalog = SessionCatalog.open(root);
+        final Exception[] failure = new Exception[1];
+        Thread saver = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    save(START + 2 * DAY, "Alex", "Login");
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        };
+        //Stands in for a lookup rescanning the disk
+        synchronized (catalog) {
+            saver.start();
+            saver.join(10000);
+            assertFalse(saver.isAlive());
+        }
+        assertNull(failure[0]);
+        assertEquals("Alex", catalog.byDate(new Date(START + 2 * DAY), new Date(START + 3 * DAY)).get(0).getTester());
+    }
+
+    public void testSavingSameSessionKeepsCatalog() throws Exception {
+        SessionCatalog catalog = SessionCatalog.open(root);
+        long version = catalog.getVersion();
+        save(START, "Jonathan", "Login");
+        assertEquals(version, catalog.getVersion());
+
+        save(START, "Jonathan", "Reports");
+        assertTrue(catalog.getVersion() > version);
+        assertEquals("Reports", catalog.byTester("Jonathan").get(0).getArea());
+    }
+
+    public void testRebuildsCorruptCatalog() throws Exception {
+        SessionCatalog.open(root);
+        SessionCatalog.close(root);
+        FileUtils.writeToFile(new File(root, SessionCatalog.FILE_NAME), "not a catalog");
+
+        assertEquals(3, SessionCatalog.open(root).size());
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.File;
+import java.util.Date;
+import junit.framework.TestCase;
+
+public class SessionCompactorTest extends TestCase {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private File root;
+
+    @Override
+    protected void setUp() throws Exception {
+        root = new File(FileUtils.SESSION_TESTER_DIR, "compactor_test");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestFiles.delete(root);
+    }
+
+    private File save(Date date, String notes, long age) throws Exception {
+        File file = TestFiles.save(root, date.getTime(), TestFiles.session("", notes));
+        file.setLastModified(System.currentTimeMillis() - age);
+        return file;
+    }
+
+    public void testCompressesOnlyOldSessions() throws Exception {
+        File old = save(new Date(1224252600000L), "old notes", 40 * DAY);
+        File recent = save(new Date(), "recent notes", DAY);
+        long modified = old.lastModified();
+
+        assertEquals(1, new SessionCompactor(root, 30).compact());
+
+        File compressed = new File(old.getPath() + Persistor.COMPRESSED_SUFFIX);
+        assertFalse(old.exists());
+        assertTrue(compressed.exists());
+        assertEquals(modified / 1000, compressed.lastModified() / 1000);
+        assertEquals("old notes", Persistor.load(compressed).getNotes());
+        assertTrue(recent.exists());
+
+        assertEquals(0, new SessionCompactor(root, 30).compact());
+    }
+
+    public void testLeavesOtherXmlAlone() throws Exception {
+        File session = save(new Date(1224252600000L), "old notes", 40 * DAY);
+        File other = new File(session.getParentFile(), "bookmarks.xml");
+        FileUtils.writeToFile(other, "<bookmarks/>");
+        other.setLastModified(System.currentTimeMillis() - 40 * DAY);
+
+        assertEquals(1, new SessionCompactor(root, 30).compact());
+        assertTrue(other.exists());
+        assertFalse(new File(other.getPath() + Persistor.COMPRESSED_SUFFIX).exists());
+
+        SessionCompactor packer = new SessionCompactor(root, 30);
+        packer.setPack(true);
+        assertEquals(1, packer.compact());
+        assertTrue(other.exists());
+        assertTrue(SessionPack.open(new File(other.getParentFile(), SessionPack.FILE_NAME)).contains(session.getName()));
+    }
+}
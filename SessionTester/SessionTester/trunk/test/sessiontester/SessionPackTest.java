@@ -0,0 +1,113 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class SessionPackTest extends TestCase {
+
+    private File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = new File(FileUtils.SESSION_TESTER_DIR, "pack_test");
+        directory.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    private File save(String name, String notes) throws Exception {
+        TestingSession session = new TestingSession();
+        session.setTester("Some dude..");
+        session.setNotes(notes);
+        session.setExtension("risk", "Data loss");
+        return Persistor.save(new File(directory, name), session);
+    }
+
+    private static long future() {
+        return new Date().getTime() + 60 * 1000;
+    }
+
+    public void testPackAndLoad() throws Exception {
+        save("testing_session_1.xml", "first");
+        Persistor.compress(save("testing_session_2.xml", "second"));
+        Persistor.save(new File(directory, "testing_session_3.xml"), Persistor.load(save("testing_session_3.xml", "third")), Persistor.Format.BINARY);
+
+        assertEquals(3, SessionPack.pack(directory, future()));
+        assertEquals(1, directory.listFiles().length);
+
+        SessionPack pack = SessionPack.open(new File(directory, SessionPack.FILE_NAME));
+        assertEquals(3, pack.size());
+        assertTrue(pack.contains("testing_session_2.xml"));
+        assertEquals("second", pack.load("testing_session_2.xml").getNotes());
+        assertEquals("Data loss", pack.load("testing_session_3.xml").getExtension("risk"));
+        assertEquals("Some dude..", pack.loadHeader("testing_session_1.xml").getTester());
+
+        final List<String> visited = new ArrayList<String>();
+        pack.loadAll(new SessionPack.Visitor() {
+
+            @Override
+            public void visit(String name, TestingSession session) {
+                visited.add(name + "=" + session.getNotes());
+            }
+        });
+        assertEquals("[testing_session_1.xml=first, testing_session_2.xml=second, testing_session_3.xml=third]", visited.toString());
+    }
+
+    public void testPackMergesAndReplacesEntries() throws Exception {
+        save("testing_session_1.xml", "first");
+        save("testing_session_2.xml", "second");
+        assertEquals(2, SessionPack.pack(directory, future()));
+
+        save("testing_session_2.xml", "second again");
+        save("testing_session_3.xml", "third");
+        assertEquals(2, SessionPack.pack(directory, future()));
+
+        SessionPack pack = SessionPack.open(new File(directory, SessionPack.FILE_NAME));
+        assertEquals(3, pack.size());
+        assertEquals("first", pack.load("testing_session_1.xml").getNotes());
+        assertEquals("second again", pack.load("testing_session_2.xml").getNotes());
+    }
+
+    public void testPackSkipsRecentFiles() throws Exception {
+        File file = save("testing_session_1.xml", "first");
+        assertEquals(0, SessionPack.pack(directory, file.lastModified() - 1000));
+        assertTrue(file.exists());
+        assertFalse(new File(directory, SessionPack.FILE_NAME).exists());
+    }
+
+    public void testOpenRejectsTruncatedPack() throws Exception {
+        save("testing_session_1.xml", "first");
+        SessionPack.pack(directory, future());
+        File packFile = new File(directory, SessionPack.FILE_NAME);
+        RandomAccessFile raf = new RandomAccessFile(packFile, "rw");
+        raf.setLength(raf.length() - 1);
+        raf.close();
+        try {
+            SessionPack.open(packFile);
+            fail();
+        } catch (IOException e) {
+            //Expected
+        }
+    }
+}
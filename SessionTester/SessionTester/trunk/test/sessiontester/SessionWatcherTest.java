@@ -0,0 +1,101 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.File;
+import java.util.Date;
+import junit.framework.TestCase;
+
+public class SessionWatcherTest extends TestCase {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long START = 1224252600000L;
+    private static final long RECONCILE = 60 * 1000;
+    private File root;
+    private File outside;
+    private SessionWatcher watcher;
+
+    @Override
+    protected void setUp() throws Exception {
+        root = new File(FileUtils.SESSION_TESTER_DIR, "watcher_test");
+        outside = new File(FileUtils.SESSION_TESTER_DIR, "watcher_test_outside");
+        TestFiles.delete(root);
+        TestFiles.delete(outside);
+        outside.mkdirs();
+        TestFiles.save(root, START, TestFiles.session("Jonathan", "first"));
+
+        watcher = new SessionWatcher(root);
+        watcher.setQuietPeriod(1000);
+        watcher.setReconcileInterval(RECONCILE);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SearchIndex.close(root);
+        SessionCatalog.close(root);
+        TestFiles.delete(root);
+        TestFiles.delete(outside);
+    }
+
+    /**
+     * Saves a session where no catalog is looking and moves it into the
+     * archive, the way a sync tool would
+     */
+    private File drop(long time, TestingSession session) throws Exception {
+        File target = FileUtils.buildTestingSessionFile(root, new Date(time));
+        File file = Persistor.save(new File(outside, target.getName()), session);
+        target.getParentFile().mkdirs();
+        assertTrue(file.renameTo(target));
+        return target;
+    }
+
+    public void testPicksUpDroppedSessionsOnceQuiet() throws Exception {
+        long now = System.currentTimeMillis();
+        SessionCatalog catalog = SessionCatalog.open(root);
+        SearchIndex index = SearchIndex.open(root);
+        assertEquals(0, watcher.poll(now));
+        assertEquals(1, catalog.size());
+
+        drop(START + DAY, TestFiles.session("Aaron", "dropped by sync"));
+        drop(START + 2 * DAY, TestFiles.session("Alex", "also dropped"));
+        assertEquals(1, catalog.size());
+
+        //Nothing is handed over until the changes settle
+        assertEquals(0, watcher.poll(now + 100));
+        assertEquals(0, watcher.poll(now + 600));
+        assertTrue(watcher.poll(now + 1700) > 0);
+        assertEquals(3, catalog.size());
+        assertEquals(1, index.search("sync", 10).size());
+        assertEquals(0, watcher.poll(now + 5000));
+    }
+
+    public void testReconcileFindsFilesRewrittenInPlace() throws Exception {
+        long now = System.currentTimeMillis();
+        File file = FileUtils.buildTestingSessionFile(root, new Date(START));
+        File directory = file.getParentFile();
+        directory.setLastModified(now - DAY);
+        SearchIndex index = SearchIndex.open(root);
+        watcher.poll(now);
+
+        //Rewriting a file in place leaves the time of its directory alone
+        drop(START, TestFiles.session("Jonathan", "rewritten"));
+        file.setLastModified(now - 2 * DAY);
+        directory.setLastModified(now - DAY);
+        watcher.poll(now + 5000);
+        watcher.poll(now + 10000);
+        assertEquals(0, index.search("rewritten", 10).size());
+
+        watcher.poll(now + RECONCILE);
+        assertTrue(watcher.poll(now + RECONCILE + 2000) > 0);
+        assertEquals(1, index.search("rewritten", 10).size());
+        assertEquals(0, index.search("first", 10).size());
+    }
+}
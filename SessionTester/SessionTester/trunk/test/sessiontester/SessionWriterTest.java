@@ -0,0 +1,105 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+public class SessionWriterTest extends TestCase {
+
+    private static TestingSession session(String notes) {
+        TestingSession session = new TestingSession();
+        session.setNotes(notes);
+        return session;
+    }
+
+    public void testSaveWritesInBackground() throws Exception {
+        final CountDownLatch saved = new CountDownLatch(1);
+        SessionWriter writer = new SessionWriter(new SessionWriter.Listener() {
+
+            @Override
+            public void saved(File file, TestingSession snapshot) {
+                saved.countDown();
+            }
+
+            @Override
+            public void failed(File file, Exception e) {
+            }
+        });
+        File file = FileUtils.buildTestingSessionFileFromCurrentTime();
+        writer.save(file, session("blah 3..."));
+
+        assertTrue(saved.await(10, TimeUnit.SECONDS));
+        assertEquals("blah 3...", Persistor.load(file).getNotes());
+        assertTrue(writer.shutdown(10 * 1000));
+    }
+
+    public void testQueuedSavesCollapseToNewest() throws Exception {
+        final CountDownLatch firstSaved = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<File> saves = Collections.synchronizedList(new ArrayList<File>());
+        SessionWriter writer = new SessionWriter(new SessionWriter.Listener() {
+
+            @Override
+            public void saved(File file, TestingSession snapshot) {
+                saves.add(file);
+                firstSaved.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public void failed(File file, Exception e) {
+            }
+        });
+        File file = FileUtils.buildTestingSessionFileFromCurrentTime();
+
+        writer.save(file, session("first"));
+        assertTrue(firstSaved.await(10, TimeUnit.SECONDS));
+        //The writer is busy, so these wait and replace each other
+        writer.save(file, session("second"));
+        writer.save(file, session("third"));
+        writer.save(file, session("fourth"));
+        release.countDown();
+
+        assertTrue(writer.shutdown(10 * 1000));
+        assertEquals(2, saves.size());
+        assertEquals("fourth", Persistor.load(file).getNotes());
+    }
+
+    public void testFailureIsReported() throws Exception {
+        final List<File> failures = Collections.synchronizedList(new ArrayList<File>());
+        SessionWriter writer = new SessionWriter(new SessionWriter.Listener() {
+
+            @Override
+            public void saved(File file, TestingSession snapshot) {
+            }
+
+            @Override
+            public void failed(File file, Exception e) {
+                failures.add(file);
+            }
+        });
+        File file = new File(new File(FileUtils.SESSION_TESTER_DIR, "missing_directory"), "testing_session.xml");
+        writer.save(file, session("blah"));
+
+        assertTrue(writer.shutdown(10 * 1000));
+        assertEquals(1, failures.size());
+    }
+}
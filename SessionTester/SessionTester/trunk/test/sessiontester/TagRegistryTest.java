@@ -0,0 +1,58 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.util.Locale;
+import junit.framework.TestCase;
+
+public class TagRegistryTest extends TestCase {
+
+    public void testBuiltInIds() {
+        TagRegistry registry = new TagRegistry();
+
+        for (int i = 0; i < Parser.TAGS.length; i++) {
+            assertEquals(i, registry.match(Parser.TAGS[i] + "\n", 0));
+            assertTrue(registry.isBuiltIn(i));
+        }
+    }
+
+    public void testCustomTags() {
+        TagRegistry registry = TagRegistry.withCustomTags("@risk question,\n@BugFix  @bug");
+
+        assertEquals(Parser.TAGS.length + 3, registry.size());
+        assertEquals("@question", registry.getTag(registry.match("@Question", 0)));
+        assertFalse(registry.isBuiltIn(registry.match("@risk", 0)));
+        assertEquals(Parser.BUG, registry.register("@BUG"));
+    }
+
+    public void testLongestMatch() {
+        TagRegistry registry = TagRegistry.withCustomTags("@bugfix");
+
+        assertEquals(Parser.BUG, registry.match("x@bug\n", 1));
+        assertEquals("@bugfix", registry.getTag(registry.match("@BUGFIX\n", 0)));
+        assertEquals(Parser.BUG, registry.match("@bugfi\n", 0));
+        assertEquals(-1, registry.match("@bu", 0));
+    }
+
+    public void testRegisterIgnoresDefaultLocale() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            TagRegistry registry = TagRegistry.withCustomTags("@RISK @Issue");
+
+            assertEquals("@risk", registry.getTag(registry.match("@risk", 0)));
+            assertEquals(Parser.TAGS.length + 1, registry.size());
+            assertEquals(Parser.BUG, registry.register("@BUG"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+}
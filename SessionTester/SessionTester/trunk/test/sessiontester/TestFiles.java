@@ -0,0 +1,69 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+
+/**
+ * Archives for the tests that need sessions on disk
+ */
+public class TestFiles {
+
+    private TestFiles() {
+    }
+
+    /**
+     * Deletes file, and everything under it if it is a directory
+     */
+    public static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    public static String read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, count);
+            }
+            return bytes.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    public static TestingSession session(String tester, String notes) {
+        TestingSession session = new TestingSession();
+        session.setTester(tester);
+        session.setNotes(notes);
+        return session;
+    }
+
+    /**
+     * Saves session into the archive at root as if it started at time
+     */
+    public static File save(File root, long time, TestingSession session) throws IOException {
+        return Persistor.save(FileUtils.buildTestingSessionFile(root, new Date(time)), session);
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester;
+
+import junit.framework.TestCase;
+
+public class TestingSessionTest extends TestCase {
+
+    private static final String BLOCK = "Tried saving a file with a very long name into a read only folder";
+
+    public void testAddJoinsBlocks() {
+        TestingSession session = new TestingSession();
+        session.addBug("BUG_1");
+        assertEquals("BUG_1\n", session.getBugs());
+
+        session.addBug("BUG_2");
+        assertEquals("BUG_1\nBUG_2\n", session.getBugs());
+
+        session.setBugs("REPLACED");
+        session.addBug("BUG_3");
+        assertEquals("REPLACED" + "BUG_3\n", session.getBugs());
+    }
+
+    /**
+     * Quadratic appends would copy gigabytes here
+     */
+    public void testAddManyBlocks() {
+        int size = 160000;
+        TestingSession session = new TestingSession();
+        for (int i = 0; i < size; i++) {
+            session.addNotes(BLOCK);
+        }
+        assertEquals(size * (BLOCK.length() + 1), session.getNotes().length());
+    }
+}
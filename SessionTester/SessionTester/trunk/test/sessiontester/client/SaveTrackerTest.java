@@ -0,0 +1,184 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester.client;
+
+import java.awt.EventQueue;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import javax.swing.text.PlainDocument;
+import junit.framework.TestCase;
+import sessiontester.EditJournal;
+import sessiontester.FileUtils;
+import sessiontester.Persistor;
+import sessiontester.SessionWriter;
+import sessiontester.TestingSession;
+
+public class SaveTrackerTest extends TestCase {
+
+    private File root;
+    private File file;
+    private final List<File> announced = new ArrayList<File>();
+    private final List<File> failures = new ArrayList<File>();
+    private File journalFile;
+    private EditJournal journal;
+    private SaveTracker tracker;
+    private SessionWriter writer;
+
+    @Override
+    protected void setUp() throws Exception {
+        root = new File(FileUtils.SESSION_TESTER_DIR, "save_tracker_test");
+        file = new File(root, "testing_session.xml");
+        root.mkdirs();
+        journalFile = new File(root, "session.journal");
+        journal = new EditJournal(journalFile, new PlainDocument(), 60 * 1000);
+        journal.begin(file, new Date(), "Some dude..", "Do stuff..");
+        tracker = new SaveTracker() {
+
+            @Override
+            protected void announce(File file) {
+                announced.add(file);
+            }
+
+            @Override
+            protected void saveFailed(File file, Exception e) {
+                failures.add(file);
+            }
+
+            @Override
+            protected void ended() {
+                journal.end();
+            }
+        };
+        writer = new SessionWriter(tracker);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        writer.shutdown(10 * 1000);
+        journalFile.delete();
+        file.delete();
+        root.delete();
+    }
+
+    private static TestingSession session(String notes) {
+        TestingSession session = new TestingSession();
+        session.setNotes(notes);
+        return session;
+    }
+
+    /**
+     * Hands a snapshot to the writer the way ClientController does, on the
+     * event dispatch thread, so no report can run in between
+     */
+    private void save(final TestingSession snapshot, final boolean user, final boolean stop) throws Exception {
+        EventQueue.invokeAndWait(new Runnable() {
+
+            @Override
+            public void run() {
+                if (user) {
+                    tracker.userSaved(snapshot);
+                } else {
+                    tracker.autosaved(snapshot);
+                }
+                writer.save(file, snapshot);
+                if (stop) {
+                    tracker.stopped(snapshot);
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits for the queued saves, then for their reports to reach the
+     * event dispatch thread, and commits the journal
+     */
+    private void finish() throws Exception {
+        assertTrue(writer.shutdown(10 * 1000));
+        EventQueue.invokeAndWait(new Runnable() {
+
+            @Override
+            public void run() {
+            }
+        });
+        journal.close();
+    }
+
+    public void testSaveIsAnnounced() throws Exception {
+        save(session("notes"), true, false);
+        finish();
+
+        assertEquals("notes", Persistor.load(file).getNotes());
+        assertEquals(1, announced.size());
+        assertEquals(file, announced.get(0));
+        assertTrue(failures.isEmpty());
+    }
+
+    public void testAutosaveIsNotAnnounced() throws Exception {
+        save(session("autosaved"), false, false);
+        finish();
+
+        assertEquals("autosaved", Persistor.load(file).getNotes());
+        assertTrue(announced.isEmpty());
+    }
+
+    public void testAutosaveAfterUserSaveIsAnnouncedOnce() throws Exception {
+        save(session("saved"), true, false);
+        //Whether or not it replaces the queued save, one of them is announced
+        save(session("autosaved"), false, false);
+        finish();
+
+        assertEquals(1, announced.size());
+    }
+
+    public void testFailureIsReported() throws Exception {
+        file = new File(new File(root, "missing_directory"), "testing_session.xml");
+        save(session("notes"), true, false);
+        finish();
+
+        assertTrue(announced.isEmpty());
+        assertEquals(1, failures.size());
+    }
+
+    public void testStopSnapshotEndsJournal() throws Exception {
+        save(session("last words"), true, true);
+        //As on exit, straight after the writer has stopped
+        assertTrue(writer.shutdown(10 * 1000));
+        EventQueue.invokeAndWait(new Runnable() {
+
+            @Override
+            public void run() {
+                tracker.deliver();
+            }
+        });
+        journal.close();
+
+        assertFalse(journalFile.exists());
+        assertNull(EditJournal.recover(journalFile));
+    }
+
+    public void testNewSessionKeepsJournal() throws Exception {
+        final TestingSession snapshot = session("last words");
+        EventQueue.invokeAndWait(new Runnable() {
+
+            @Override
+            public void run() {
+                writer.save(file, snapshot);
+                tracker.stopped(snapshot);
+                tracker.started();
+            }
+        });
+        finish();
+
+        assertTrue(journalFile.exists());
+    }
+}
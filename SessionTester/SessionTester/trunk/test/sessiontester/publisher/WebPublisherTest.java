@@ -0,0 +1,47 @@
+/*
+ * Session Tester - The Exploratory Testing Tool, a tool to help manage exploratory testing sessions, prime testing ideas and record test results.
+ *
+ * Copyright (C) 2008 Jonathan Kohl, Aaron West
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sessiontester.publisher;
+
+import java.io.File;
+import junit.framework.TestCase;
+import sessiontester.FileUtils;
+import sessiontester.TestFiles;
+import sessiontester.TestingSession;
+
+public class WebPublisherTest extends TestCase {
+
+    private File publishDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        publishDir = new File(FileUtils.SESSION_TESTER_DIR, "publisher_test");
+        TestFiles.delete(publishDir);
+        publishDir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestFiles.delete(publishDir);
+    }
+
+    public void testReportEscapesCustomTagNames() throws Exception {
+        TestingSession session = TestFiles.session("Jonathan", "blah 3...");
+        session.setExtension("risk<b>", "Data loss");
+        new WebPublisher().buildReport("session.xml", session, publishDir);
+
+        File[] reports = publishDir.listFiles();
+        assertEquals(1, reports.length);
+        String report = TestFiles.read(reports[0]);
+        assertTrue(report.contains("<h2>risk&lt;b&gt;</h2>"));
+        assertTrue(report.contains("<pre>Data loss</pre>"));
+        assertTrue(report.contains("<pre>Jonathan</pre>"));
+    }
+}